@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock.benchmarks;
+
+import com.carlfx.worldclock.ClockState;
+import com.carlfx.worldclock.Location;
+import com.carlfx.worldclock.USLocation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per clock tick computation (formerly WorldClockController.secondListener) now done by {@link ClockState}.
+ * A board of clocks in a mix of fixed GMT offsets and daylight saving time zones is ticked one minute at a time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClockStateBenchmark {
+    private static final String[] TIMEZONES = {
+            "-5", "GMT+1", "0", "America/New_York", "Europe/Madrid", "Asia/Kolkata", "Australia/Sydney"
+    };
+
+    // 2021-03-19 12:00:00 GMT
+    private static final long NOON = 1616155200000L;
+
+    @Param({"1", "1000"})
+    public int clocks;
+
+    private ClockState[] clockStates;
+    private long epochMillis;
+
+    @Setup
+    public void setup() {
+        clockStates = new ClockState[clocks];
+        for (int i = 0; i < clocks; i++) {
+            Location location = i % 2 == 0
+                    ? new Location(TIMEZONES[i % TIMEZONES.length], "City" + i, "DE")
+                    : new USLocation(TIMEZONES[i % TIMEZONES.length], "City" + i, "MD");
+            clockStates[i] = new ClockState(location);
+        }
+        epochMillis = NOON;
+    }
+
+    /**
+     * One tick of every clock on the board. The score is in board ticks, times the clocks param for clocks.
+     */
+    @Benchmark
+    public void tick(Blackhole blackhole) {
+        // stay within the same hours so that no day is crossed.
+        epochMillis = NOON + (epochMillis - NOON + 60_000) % 3_600_000;
+        for (ClockState clockState : clockStates) {
+            clockState.update(epochMillis);
+            blackhole.consume(clockState.getTimeText());
+            blackhole.consume(clockState.getMinuteStartAngle());
+            blackhole.consume(clockState.getHourTipY());
+        }
+    }
+}
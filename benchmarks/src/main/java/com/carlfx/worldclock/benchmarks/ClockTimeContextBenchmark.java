@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock.benchmarks;
+
+import com.carlfx.worldclock.ClockTimeContext;
+import com.carlfx.worldclock.Location;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per tick time computation of the former WorldClockController.secondListener against
+ * the precompiled {@link ClockTimeContext}. Run with the GC profiler (-prof gc) to see the allocation
+ * per operation (gc.alloc.rate.norm) which should be 0 B/op for the time context.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClockTimeContextBenchmark {
+
+    // 2021-03-19 12:00:00 GMT, every tick stays within the same hour so no day is crossed.
+    private static final long NOON = 1616155200000L;
+
+    @Param({"-5", "GMT+1"})
+    public String timezone;
+
+    private Location location;
+    private ClockTimeContext timeContext;
+    private int second;
+
+    @Setup
+    public void setup() {
+        location = new Location(timezone, "Pasadena", "US");
+        timeContext = new ClockTimeContext(location);
+    }
+
+    private long nextTick() {
+        second = (second + 1) % 3600;
+        return NOON + second * 1000L;
+    }
+
+    @Benchmark
+    public void timeContext(Blackhole blackhole) {
+        timeContext.update(nextTick());
+        blackhole.consume(timeContext.getHour());
+        blackhole.consume(timeContext.getMinute());
+        blackhole.consume(timeContext.getTimeText());
+        blackhole.consume(timeContext.getDayText());
+        blackhole.consume(timeContext.getMonthDateText());
+    }
+
+    /**
+     * The time computation as it used to be done on every tick.
+     */
+    @Benchmark
+    public void legacySecondListener(Blackhole blackhole) {
+        long epochMillis = nextTick();
+        String gmtOffset = location.getTimezone();
+        if (gmtOffset.indexOf("GMT") > -1) {
+            gmtOffset = gmtOffset.substring(3);
+        }
+        if ("".equals(gmtOffset.trim())) {
+            gmtOffset = "0";
+        }
+        gmtOffset = "GMT%+d".formatted(Integer.parseInt(gmtOffset));
+        Calendar newCalendar = Calendar.getInstance(TimeZone.getTimeZone(gmtOffset));
+        newCalendar.setTime(new Date(epochMillis));
+        SimpleDateFormat timeDisplay = new SimpleDateFormat("h:mm");
+        timeDisplay.setTimeZone(TimeZone.getTimeZone(gmtOffset));
+
+        int hour = newCalendar.get(Calendar.HOUR) > 12 ? newCalendar.get(Calendar.HOUR)-12 : newCalendar.get(Calendar.HOUR);
+        hour = hour == 0 ? 12 : hour;
+        blackhole.consume(hour);
+        blackhole.consume(newCalendar.get(Calendar.MINUTE));
+        blackhole.consume(timeDisplay.format(newCalendar.getTime()));
+
+        DateTimeFormatter dayLongformat = DateTimeFormatter.ofPattern("EEEE");
+        blackhole.consume(dayLongformat.format(ZonedDateTime.now(ZoneId.of(gmtOffset))));
+        DateTimeFormatter monthLongformat = DateTimeFormatter.ofPattern("MMMM d");
+        blackhole.consume(monthLongformat.format(ZonedDateTime.now(ZoneId.of(gmtOffset))));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock.benchmarks;
+
+import com.carlfx.worldclock.ClockWidgetFactory;
+import javafx.application.Platform;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of creating the clock widgets: parsing clock-widget.fxml per clock (fxml) versus the
+ * {@link ClockWidgetFactory} building the nodes in code (factory). Requires the JavaFX toolkit, on a headless
+ * machine run with Monocle, e.g. -jvmArgs "-Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClockWidgetBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int clocks;
+
+    private ClockWidgetFactory clockWidgetFactory;
+
+    @Setup
+    public void setup() {
+        try {
+            Platform.startup(() -> {});
+        } catch (IllegalStateException alreadyStarted) {
+            // toolkit already running
+        }
+        clockWidgetFactory = ClockWidgetFactory.getInstance();
+    }
+
+    @TearDown
+    public void tearDown() {
+        Platform.exit();
+    }
+
+    @Benchmark
+    public void fxml(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < clocks; i++) {
+            blackhole.consume(clockWidgetFactory.load());
+        }
+    }
+
+    @Benchmark
+    public void factory(Blackhole blackhole) {
+        for (int i = 0; i < clocks; i++) {
+            blackhole.consume(clockWidgetFactory.create());
+        }
+    }
+}
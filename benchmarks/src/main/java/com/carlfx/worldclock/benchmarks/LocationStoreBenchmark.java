@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock.benchmarks;
+
+import com.carlfx.worldclock.Location;
+import com.carlfx.worldclock.LocationJournal;
+import com.carlfx.worldclock.LocationStore;
+import com.carlfx.worldclock.USLocation;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loading and saving locations.json as done by the ConfigLocationsController at startup, versus appending an edit to
+ * the {@link LocationJournal} (compacted in the background every 1000 edits).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocationStoreBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int locationCount;
+
+    private Path directory;
+    private LocationStore loadStore;
+    private LocationStore saveStore;
+    private LocationJournal journal;
+    private List<Location> locations;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("worldclock-bench");
+        locations = new ArrayList<>(locationCount);
+        for (int i = 0; i < locationCount; i++) {
+            Location location = i % 2 == 0
+                    ? new Location("Europe/Madrid", "City" + i, "ES")
+                    : new USLocation("-5", "City" + i, "MD");
+            location.setLatLong(new double[] {i % 180 - 90, i % 360 - 180});
+            locations.add(location);
+        }
+        loadStore = new LocationStore(directory.resolve("load.json"));
+        loadStore.save(locations);
+        saveStore = new LocationStore(directory.resolve("save.json"));
+        journal = new LocationJournal(new LocationStore(directory.resolve("journal.json")),
+                directory.resolve("locations.journal"));
+        journal.load();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<Location> load() throws IOException {
+        return loadStore.load();
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        saveStore.save(locations);
+    }
+
+    @Benchmark
+    public void appendUpdate() throws IOException {
+        journal.append(List.of(LocationJournal.Change.update(locations.get(0))));
+    }
+}
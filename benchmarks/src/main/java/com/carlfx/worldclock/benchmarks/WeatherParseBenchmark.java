@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock.benchmarks;
+
+import com.carlfx.worldclock.WeatherReport;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the current weather payload of openweathermap.org for every refresh. The streaming parser of
+ * {@link WeatherReport} versus reading the whole payload into a Map with a new ObjectMapper as updateWeatherUI did.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WeatherParseBenchmark {
+
+    // a typical response of api.openweathermap.org/data/2.5/weather?units=metric
+    static final String PAYLOAD = """
+            {"coord":{"lon":-76.5591,"lat":39.1732},\
+            "weather":[{"id":803,"main":"Clouds","description":"broken clouds","icon":"04n"}],\
+            "base":"stations",\
+            "main":{"temp":7.32,"feels_like":4.51,"temp_min":5.56,"temp_max":8.89,"pressure":1021,"humidity":61},\
+            "visibility":10000,\
+            "wind":{"speed":3.6,"deg":320},\
+            "clouds":{"all":75},\
+            "dt":1616198400,\
+            "sys":{"type":1,"id":5053,"country":"US","sunrise":1616152096,"sunset":1616195799},\
+            "timezone":-14400,\
+            "id":4364727,\
+            "name":"Pasadena",\
+            "cod":200}""";
+    static final byte[] PAYLOAD_BYTES = PAYLOAD.getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public WeatherReport map() throws JsonProcessingException {
+        return parseMap(PAYLOAD);
+    }
+
+    @Benchmark
+    public WeatherReport streaming() throws JsonProcessingException {
+        return WeatherReport.parse(PAYLOAD);
+    }
+
+    @Benchmark
+    public WeatherReport streamingBytes() throws JsonProcessingException {
+        return WeatherReport.parse(PAYLOAD_BYTES);
+    }
+
+    /**
+     * The previous parser.
+     */
+    @SuppressWarnings("unchecked")
+    static WeatherReport parseMap(String dayForecastJson) throws JsonProcessingException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Object> dayForecast = mapper.readValue(dayForecastJson, Map.class);
+        List<Map<String, Object>> weatherInfo = (List<Map<String, Object>>) dayForecast.get("weather");
+        Map<String, Object> weatherIconInfo = weatherInfo.size() > 0 ? weatherInfo.get(0) : Map.of();
+        Map<String, Object> tempInfo = (Map<String, Object>) dayForecast.get("main");
+        Object description = weatherIconInfo.get("description");
+        return new WeatherReport((String) weatherIconInfo.get("icon"),
+                description == null ? "" : description.toString(),
+                Float.parseFloat(tempInfo.get("temp").toString()));
+    }
+}
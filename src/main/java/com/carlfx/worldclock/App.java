@@ -23,7 +23,6 @@ import javafx.animation.TranslateTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
-import javafx.concurrent.Worker;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Orientation;
 import javafx.geometry.Point2D;
@@ -36,18 +35,18 @@ import javafx.scene.control.ScrollPane;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.Pane;
-import javafx.scene.layout.VBox;
+import javafx.scene.layout.Region;
 import javafx.scene.text.Font;
-import javafx.scene.web.WebEngine;
-import javafx.scene.web.WebView;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.util.Duration;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.carlfx.worldclock.WorldClockEvent.*;
 
@@ -70,13 +69,71 @@ public class App extends Application {
     };
 
     private final static String LCD_FONT_PROP = "prism.lcdtext";
-    public static VBox clockList;
+    // seconds or minutes (default) how often the clocks get redrawn.
+    private final static String TICK_MODE_PROP = "worldclock.tickMode";
+    // fxml (default) or canvas how the list of clocks gets rendered.
+    private final static String RENDERER_PROP = "worldclock.renderer";
+    // true to print the stats of the clocks, persistence, map tiles and weather on exit.
+    private final static String STATS_PROP = "worldclock.stats";
+    private ClockBoard clockBoard;
+    // clocks shown in the first frame, enough to fill the window. The rest is added right after.
+    private final static int FIRST_FRAME_CLOCKS = 6;
+    private final static int STARTUP_THREADS = 4;
+
+    // prepared in parallel off the FX thread
+    private List<Location> storedLocations;
+    private FXMLLoader titleBarControlLoader;
+    private FXMLLoader configLocationLoader;
+
+    // eager (default), lazy or none when the map gets created.
+    private final static String MAP_PROP = "worldclock.map";
+    private WorldMap worldMap;
 
     @Override
     public void init() throws Exception {
         super.init();
-        // load fonts
-        Arrays.stream(fontFiles).forEach(this::fontLoader);
+        StartupMetrics startupMetrics = StartupMetrics.getInstance();
+        ExecutorService startupExecutor = Executors.newFixedThreadPool(STARTUP_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "worldclock-startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // load fonts, locations.json, the FXML templates and the cached weather in parallel
+            CompletableFuture<Void> fontsLoaded = CompletableFuture.allOf(Arrays.stream(fontFiles)
+                            .map(fileName -> CompletableFuture.runAsync(() -> fontLoader(fileName), startupExecutor))
+                            .toArray(CompletableFuture[]::new))
+                    .thenRun(() -> startupMetrics.mark(StartupMetrics.FONTS));
+            CompletableFuture<List<Location>> locationsLoaded = CompletableFuture
+                    .supplyAsync(ConfigLocationsController::loadStoredLocations, startupExecutor)
+                    .whenComplete((locations, err) -> startupMetrics.mark(StartupMetrics.LOCATIONS));
+            CompletableFuture<FXMLLoader> titleBarLoaded = CompletableFuture
+                    .supplyAsync(() -> loadFXML("window-controls.fxml"), startupExecutor);
+            CompletableFuture<FXMLLoader> configLoaded = CompletableFuture
+                    .supplyAsync(() -> loadFXML("config-locations.fxml"), startupExecutor);
+            CompletableFuture.allOf(titleBarLoaded, configLoaded)
+                    .thenRun(() -> startupMetrics.mark(StartupMetrics.TEMPLATES));
+            CompletableFuture<Void> weatherLoaded = CompletableFuture
+                    .runAsync(WeatherService::getInstance, startupExecutor)
+                    .whenComplete((unused, err) -> startupMetrics.mark(StartupMetrics.WEATHER));
+
+            CompletableFuture.allOf(fontsLoaded, locationsLoaded, titleBarLoaded, configLoaded, weatherLoaded).join();
+            storedLocations = locationsLoaded.join();
+            titleBarControlLoader = titleBarLoaded.join();
+            configLocationLoader = configLoaded.join();
+        } finally {
+            startupExecutor.shutdown();
+        }
+    }
+
+    private static FXMLLoader loadFXML(String fileName) {
+        FXMLLoader fxmlLoader = new FXMLLoader(App.class.getResource(fileName));
+        try {
+            fxmlLoader.load();
+            return fxmlLoader;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     private void fontLoader(String fileName) {
@@ -91,6 +148,7 @@ public class App extends Application {
         stage.initStyle(StageStyle.TRANSPARENT);
         stage.setOpacity(.75);
         App.stage = stage;
+        TickEngine.getInstance().setTickMode(enumProperty(TICK_MODE_PROP, TickEngine.TickMode.MINUTES));
 
         BorderPane windowContainer = new BorderPane();
         windowContainer.getStyleClass().add("clock-background");
@@ -98,71 +156,55 @@ public class App extends Application {
 
         // load the window title bar
         windowContainer.getStyleClass().add("window-container");
-        clockList = new VBox();
-        FXMLLoader titleBarControlLoader = new FXMLLoader(App.class.getResource("window-controls.fxml"));
-        Parent windowBar = titleBarControlLoader.load();
+        Parent windowBar = titleBarControlLoader.getRoot();
         BorderPane.setAlignment(windowBar, Pos.CENTER_RIGHT);
         windowContainer.setTop(windowBar);
 
         // load the config form
         Pane centerPane = new Pane();
 
-        FXMLLoader configLocationLoader = new FXMLLoader(App.class.getResource("config-locations.fxml"));
-        Parent configPane = configLocationLoader.load();
+        Parent configPane = configLocationLoader.getRoot();
         ConfigLocationsController configController = configLocationLoader.getController();
 
         // locations is a singleton from the config controller.
+        configController.initLocations(storedLocations);
         locations = configController.getLocations();
 
         configPane.setVisible(false);
-        ScrollPane scrollPane = new ScrollPane(clockList);
-        scrollPane.getStyleClass().add("clock-background");
+        clockBoard = createClockBoard();
+        Region clockBoardView = clockBoard.getView();
+        centerPane.getChildren().addAll(clockBoardView, configPane);
 
-        scrollPane.setHbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
-        scrollPane.setVbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
-        centerPane.getChildren().addAll(scrollPane, configPane);
-
-        scrollPane.prefHeightProperty().bind(centerPane.heightProperty());
-        //makeDraggable(scrollPane);
+        clockBoardView.prefHeightProperty().bind(centerPane.heightProperty());
+        //makeDraggable(clockBoardView);
         windowContainer.setCenter(centerPane);
         makeDraggable(windowContainer);
 
-        // Create a WebView (index.html) containing a map. After map is finished loading add the pins of locations.
-        WebView webView = createMap((webEngine) -> {
-            for (Location location:locations) {
-                // Call JS function addMarker to add pins to the map based on locations.
-                webEngine.executeScript(
-                        "addMarker(\"%s\", %3.8f, %3.8f)".formatted(location.getFullLocationName(),
-                                location.getLatitude(), location.getLongitude()));
-            }
-            centerPane.setPrefHeight(configPane.getBoundsInLocal().getHeight());
-        });
-
-        // Obtain web engine
-        final WebEngine webEngine = webView.getEngine();
+        // Map commands are queued until the map is attached and loaded
+        worldMap = new WorldMap(enumProperty(MAP_PROP, WorldMap.Mode.EAGER));
+        locations.forEach(worldMap::addMarker);
 
-        // Style the vbox
-        clockList.getStyleClass().add("clock-background");
-        clockList.getChildren()
-                .addAll(locations.stream()
-                        .map( location -> createOneClock(webEngine, location)) /* Create clock from FXML */
-                        .collect(Collectors.toList()));
-
-        scrollPane.getStyleClass().add("clock-background");
+        // Double click a clock to view its location on the map
+        clockBoard.setOnViewLocation(worldMap::viewMapLocation);
+        // the first clocks are shown in the first frame
+        locations.stream()
+                .limit(FIRST_FRAME_CLOCKS)
+                .forEach(clockBoard::addClock);
 
         // Animate toggle between Config view vs World Clock List view
         windowContainer.addEventHandler(CONFIG_SHOWING, event -> {
             TranslateTransition moveList = new TranslateTransition();
-            moveList.setNode(scrollPane);
+            moveList.setNode(clockBoardView);
             moveList.setDuration(Duration.millis(400));
             WindowController windowController = event.getPayload();
+            clockBoard.setConfigShowing(windowController.isConfigShowing());
             if (windowController.isConfigShowing()) {
                 moveList.setInterpolator(Interpolator.EASE_OUT);
                 moveList.setFromX(0);
-                moveList.setToX(-scrollPane.getWidth());
+                moveList.setToX(-clockBoardView.getWidth());
             } else {
                 moveList.setInterpolator(Interpolator.EASE_IN);
-                moveList.setFromX(-scrollPane.getWidth());
+                moveList.setFromX(-clockBoardView.getWidth());
                 moveList.setToX(0);
             }
 
@@ -172,15 +214,15 @@ public class App extends Application {
 
             moveConfig.setDuration(Duration.millis(400));
             if (!windowController.isConfigShowing()) {
-                scrollPane.toFront();
+                clockBoardView.toFront();
                 moveConfig.setInterpolator(Interpolator.EASE_OUT);
                 moveConfig.setFromX(0);
-                moveConfig.setToX(-scrollPane.getWidth() + scrollPane.getPadding().getLeft() + scrollPane.getPadding().getRight());
+                moveConfig.setToX(-clockBoardView.getWidth() + clockBoardView.getPadding().getLeft() + clockBoardView.getPadding().getRight());
             } else {
                 configPane.setVisible(true);
                 configPane.toFront();
                 moveConfig.setInterpolator(Interpolator.EASE_IN);
-                moveConfig.setFromX(-scrollPane.getWidth() + scrollPane.getPadding().getLeft() + scrollPane.getPadding().getRight());
+                moveConfig.setFromX(-clockBoardView.getWidth() + clockBoardView.getPadding().getLeft() + clockBoardView.getPadding().getRight());
                 moveConfig.setToX(0);
             }
 //            System.out.println("clock list  width " + clockList.getWidth());
@@ -195,39 +237,20 @@ public class App extends Application {
         windowContainer.addEventHandler(LOCATION_ADD, event -> {
             Location location = event.getPayload();
             // Add a map marker
-            webEngine.executeScript("addMarker(\"%s\", %3.8f, %3.8f)".formatted(
-                    location.getFullLocationName(), location.getLatitude(), location.getLongitude()));
-
-            // Make VBox visual rows(HBox) are in the same order.
-            Iterator<Node> itr = clockList.getChildren().iterator();
-            int idx = -1;
-            boolean found = false;
-            while (itr.hasNext()) {
-                Location loc = (Location) itr.next().getUserData();
-                idx+=1;
-                if (loc.equals(location)) {
-                    found = true;
-                    break;
-                }
-            }
-
-            Parent oneClockView = createOneClock(webEngine, location);
-
-            if (found && clockList.getChildren().size()-1 > 0) {
-                // replace with new location
-                clockList.getChildren().set(idx, oneClockView);
-            } else {
-                clockList.getChildren().add(oneClockView);
-            }
+            worldMap.addMarker(location);
 
+            // Add or replace the location's clock
+            clockBoard.addClock(location);
         });
 
         // When location (lat/lon) changes remove old pin (marker) on map and replace
         windowContainer.addEventHandler(LOCATION_UPDATE, event -> {
             Location location = event.getPayload();
-            // Add a map marker
-            webEngine.executeScript("addMarker(\"%s\", %3.8f, %3.8f)".formatted(
-                    location.getFullLocationName(), location.getLatitude(), location.getLongitude()));
+            // Move or rename the location's map marker
+            worldMap.addMarker(location);
+
+            // Wire the location's clock again right away to show the edited city and its weather
+            clockBoard.addClock(location);
         });
 
         // Subscribe to a removed Location event
@@ -235,18 +258,9 @@ public class App extends Application {
             Location location = event.getPayload();
             System.out.println("window container location_remove heard!");
             // Remove Pin a map marker
-            webEngine.executeScript("removeMarker(\"%s\")".formatted(location.getFullLocationName()));
-
-            Iterator<Node> itr = clockList.getChildren().iterator();
-            while (itr.hasNext()) {
-                Node oneClockView = itr.next();
-                Location loc = (Location) oneClockView.getUserData();
-                if (loc.equals(location)) {
-                    oneClockView.fireEvent(new WorldClockEvent(CLEANUP_CLOCK, "Clean up"));
-                    itr.remove();
-                    break;
-                }
-            }
+            worldMap.removeMarker(location);
+
+            clockBoard.removeClock(location);
 
             //WorldClockEvent.trigger(clockList, event);
             //System.out.println("broadcast out to children");
@@ -256,29 +270,16 @@ public class App extends Application {
         windowContainer.addEventFilter(LOCATION_MOVE_UP, event -> {
             RowLocation rowLocation = event.getPayload();
             System.out.println("window container location_move_up heard! index:" + rowLocation.getIndex() + " loc: " + rowLocation.getLocation().getFullLocationName());
-            List<Node> copyList = new ArrayList<>(clockList.getChildren());
-            clockList.getChildren().removeAll(copyList);
-            Node prevNode = copyList.get(rowLocation.getIndex());
-            Node currentNode = copyList.get(rowLocation.getIndex() + 1);
-            copyList.set(rowLocation.getIndex(), currentNode);
-            copyList.set(rowLocation.getIndex()+1, prevNode);
-            clockList.getChildren().addAll(copyList);
+            clockBoard.swapClocks(rowLocation.getIndex(), rowLocation.getIndex() + 1);
         });
 
         // Subscribe to a MOVE UP Location event
         windowContainer.addEventFilter(LOCATION_MOVE_DOWN, event -> {
             RowLocation rowLocation = event.getPayload();
             System.out.println("window container location_move_down heard! index:" + rowLocation.getIndex() + " loc: " + rowLocation.getLocation().getFullLocationName());
-            List<Node> copyList = new ArrayList<>(clockList.getChildren());
-            clockList.getChildren().removeAll(copyList);
-            Node nextNode = copyList.get(rowLocation.getIndex());
-            Node currentNode = copyList.get(rowLocation.getIndex() - 1);
-            copyList.set(rowLocation.getIndex(), currentNode);
-            copyList.set(rowLocation.getIndex() - 1, nextNode);
-            clockList.getChildren().addAll(copyList);
+            clockBoard.swapClocks(rowLocation.getIndex(), rowLocation.getIndex() - 1);
         });
 
-        windowContainer.setBottom(webView);
         Scene scene = new Scene(windowContainer);
         scene.getStylesheets()
              .add(Objects.requireNonNull(getClass()
@@ -286,25 +287,64 @@ public class App extends Application {
              .toExternalForm());
         
         scene.setFill(null);
+
+        // Pause all clocks while minimized
+        stage.iconifiedProperty().addListener((observable, oldValue, iconified) ->
+                TickEngine.getInstance().setPaused(iconified));
+
         stage.setScene(scene);
         stage.show();
+
+        // Once the first clocks are shown add the remaining clocks, then attach the map and fetch the weather.
+        StartupMetrics startupMetrics = StartupMetrics.getInstance();
+        afterNextPulse(scene, () -> {
+            startupMetrics.firstFrameShown();
+            locations.stream()
+                    .skip(FIRST_FRAME_CLOCKS)
+                    .forEach(clockBoard::addClock);
+            afterNextPulse(scene, () -> {
+                startupMetrics.mark(StartupMetrics.ALL_CLOCKS);
+                attachMap(windowContainer, centerPane, configPane);
+            });
+        });
     }
 
-    private Parent createOneClock(WebEngine webEngine, Location location) {
-        Parent oneClockView = null;
-        try {
-            oneClockView = loadClockFXML(location);
-            oneClockView.setOnMouseClicked(mouseEvent -> {
-                if (mouseEvent.getClickCount() == 2) {
-                    String jsCall = "viewMapLocation('%s')".formatted(location.getFullLocationName());
-                    webEngine.executeScript(jsCall);
+    /**
+     * Runs once after the layout of the next pulse.
+     */
+    private static void afterNextPulse(Scene scene, Runnable runnable) {
+        Runnable pulseListener = new Runnable() {
+            private boolean ran;
+            @Override
+            public void run() {
+                if (!ran) {
+                    ran = true;
+                    Platform.runLater(() -> {
+                        scene.removePostLayoutPulseListener(this);
+                        runnable.run();
+                    });
                 }
-            });
-            return oneClockView;
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        }
+            }
+        };
+        scene.addPostLayoutPulseListener(pulseListener);
+        Platform.requestNextPulse();
+    }
+
+    /**
+     * Attach the map below the clocks (a placeholder when lazy, nothing when there's no map).
+     */
+    private void attachMap(BorderPane windowContainer, Pane centerPane, Parent configPane) {
+        centerPane.setPrefHeight(configPane.getBoundsInLocal().getHeight());
+        windowContainer.setBottom(worldMap.attach());
+        stage.sizeToScene();
+    }
+
+    private ClockBoard createClockBoard() {
+        ClockBoard.Renderer renderer = enumProperty(RENDERER_PROP, ClockBoard.Renderer.FXML);
+        return switch (renderer) {
+            case FXML -> new FxmlClockBoard();
+            case CANVAS -> new CanvasClockBoard();
+        };
     }
 
     private Optional<Node> grabScrollBar(ScrollPane scrollPane, Orientation orientation) {
@@ -328,39 +368,6 @@ public class App extends Application {
         return Optional.empty();
     }
 
-    /**
-     * A simple WebView containing a web page.
-     * @return
-     */
-    private WebView createMap(Consumer<WebEngine> addPointMarkers) {
-        WebView webView = new WebView();
-        webView.setPrefWidth(310);
-        webView.setPrefHeight(310);
-        WebEngine webEngine = webView.getEngine();
-        // Allows Java code to talk to JavaScript code
-        webEngine.setJavaScriptEnabled(true);
-        webEngine.setOnAlert(webEvent -> {
-            System.out.println("WebKit Alert: " + webEvent.getData());
-        });
-
-        webEngine
-                .getLoadWorker()
-                .stateProperty().addListener((observable, oldValue, newValue) -> {
-                    if (newValue == Worker.State.SUCCEEDED) {
-                        System.out.println("index.html loaded successfully");
-                        addPointMarkers.accept(webEngine);
-                    } else {
-                        System.out.println("WebEngine state " + newValue);
-                    }
-                }
-        );
-
-        webEngine.load(getClass().getResource("index.html").toExternalForm());
-        webView.requestFocus();
-
-        return webView;
-    }
-
     public static class DragContext {
         public Point2D anchorPt;
         public Point2D previousLocation;
@@ -390,24 +397,43 @@ public class App extends Application {
         node.addEventHandler(MouseEvent.MOUSE_RELEASED, mouseEvent -> dragContext.previousLocation = new Point2D(stage.getX(), stage.getY()));
     }
 
-    private Parent loadClockFXML(Location location) throws IOException {
-        FXMLLoader fxmlLoader = new FXMLLoader(App.class.getResource("clock-widget.fxml"));
-        Parent parent = fxmlLoader.load();
-
-        parent.setUserData(location);
-        WorldClockController controller = fxmlLoader.getController();
-        parent.addEventHandler(CLEANUP_CLOCK, event -> controller.cleanup());
-        controller.init(location);
-        return parent;
-    }
-
-
     @Override
     public void stop() {
+        LocationSaver.getInstance().flush();
+        if (Boolean.getBoolean(STATS_PROP)) {
+            System.out.println(TickEngine.getInstance());
+            System.out.println(LocationSaver.getInstance());
+            System.out.println(LocationJournal.getInstance());
+            System.out.println(TileCache.getInstance());
+            System.out.println(WeatherService.getInstance());
+            System.out.println(WeatherIconCache.getInstance());
+        }
+        WeatherService.getInstance().saveCache();
         Platform.exit();
         System.exit(0);
     }
 
+    /**
+     * Reads an option such as -Dworldclock.tickMode=seconds ignoring case. An unknown value (e.g. a typo) is
+     * logged and falls back to the default.
+     * @param property name of the system property.
+     * @param defaultValue used when not set or not known.
+     * @return the option's constant.
+     */
+    static <E extends Enum<E>> E enumProperty(String property, E defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unknown " + property + "=" + value + ", using " + defaultValue.name().toLowerCase()
+                    + ". Known: " + Arrays.toString(defaultValue.getDeclaringClass().getEnumConstants()).toLowerCase());
+            return defaultValue;
+        }
+    }
+
     public static void main(String[] args) {
         System.setProperty(LCD_FONT_PROP, "false");
         launch();
@@ -0,0 +1,477 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import javafx.application.Platform;
+import javafx.geometry.Bounds;
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.effect.Bloom;
+import javafx.scene.effect.GaussianBlur;
+import javafx.scene.effect.Glow;
+import javafx.scene.image.Image;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.CycleMethod;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.paint.Stop;
+import javafx.scene.shape.Arc;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Draws all clocks into a single canvas instead of a scene graph of nodes and effects per clock. The look of
+ * clock-widget.fxml is reproduced by drawing text and shapes directly, while the glowing hand arcs and tips are
+ * snapshots of the same effects rendered once and cached by minute and hour position. Only rows whose time,
+ * region or weather changed are redrawn, coalesced into one repaint. Rows scrolled out of view or covered by the
+ * config pane are suspended in the {@link TickEngine}.
+ */
+public class CanvasClockBoard extends Region implements ClockBoard {
+    static final double ROW_WIDTH = 314;
+    static final double ROW_HEIGHT = 104;
+
+    // layout of a row matching clock-widget.fxml
+    private static final double DATE_RIGHT_X = 139;
+    private static final double FACE_CENTER_X = 202;
+    private static final double FACE_CENTER_Y = ROW_HEIGHT / 2;
+    private static final double ICON_X = 254;
+    private static final double ICON_Y = 10;
+    private static final double ICON_SIZE = 55;
+
+    private static final Color ROW_BACKGROUND = Color.rgb(0, 0, 0, 0.65);
+    private static final Color REGION_COLOR = Color.web("#ff9d00");
+    private static final Color SHADOW_COLOR = Color.web("#403939");
+    private static final Color HOUR_SHADOW_COLOR = Color.web("#403939db");
+    private static final Font REGION_FONT = Font.font("Roboto Medium", 16);
+    private static final Font DAY_FONT = Font.font("Roboto Thin", 14);
+    private static final Font MONTH_DATE_FONT = Font.font("Roboto Bold", 20);
+    private static final Font TIME_FONT = Font.font("Roboto Bold", 20);
+    private static final Font TEMPERATURE_FONT = Font.font("Roboto Black", 18);
+
+    // glowing hands rendered once on demand, shared by all boards.
+    private static final Sprite[] MINUTE_ARC_SPRITES = new Sprite[60];
+    private static final Sprite[] HOUR_ARC_SPRITES = new Sprite[720];
+    private static Sprite minuteTipSprite;
+    private static Sprite hourTipSprite;
+
+    private final Canvas canvas = new Canvas();
+    private final ScrollBar scrollBar = new ScrollBar();
+    private final List<ClockRow> rows = new ArrayList<>();
+    private final Map<String, ClockRow> rowsById = new HashMap<>();
+    // rows within the canvas not suspended in the tick engine
+    private final Set<ClockRow> resumedRows = new HashSet<>();
+    private boolean configShowing;
+    private boolean repaintPending;
+    private boolean suspensionPending;
+    private boolean repaintAll = true;
+    private Consumer<Location> onViewLocation = location -> {};
+
+    /**
+     * A pre-rendered image drawn at an offset from the clock face's center.
+     */
+    private record Sprite(Image image, double offsetX, double offsetY) {}
+
+    public CanvasClockBoard() {
+        getStyleClass().add("clock-background");
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.setVisible(false);
+        getChildren().addAll(canvas, scrollBar);
+
+        scrollBar.valueProperty().addListener(observable -> {
+            repaintAll = true;
+            requestRepaint();
+            updateSuspension();
+        });
+        addEventHandler(ScrollEvent.SCROLL, scrollEvent -> {
+            double value = scrollBar.getValue() - scrollEvent.getDeltaY();
+            scrollBar.setValue(Math.max(scrollBar.getMin(), Math.min(scrollBar.getMax(), value)));
+        });
+        canvas.addEventHandler(MouseEvent.MOUSE_CLICKED, mouseEvent -> {
+            if (mouseEvent.getClickCount() == 2) {
+                int index = (int) ((mouseEvent.getY() + scrollBar.getValue()) / ROW_HEIGHT);
+                if (index >= 0 && index < rows.size()) {
+                    onViewLocation.accept(rows.get(index).clockState.getLocation());
+                }
+            }
+        });
+    }
+
+    @Override
+    public Region getView() {
+        return this;
+    }
+
+    @Override
+    public void addClock(Location location) {
+        ClockRow clockRow = rowsById.get(location.getId());
+        if (clockRow != null) {
+            // rebind the edited location's row in place keeping its position and suspension
+            TickEngine tickEngine = TickEngine.getInstance();
+            boolean suspended = tickEngine.isSuspended(clockRow);
+            tickEngine.unregister(clockRow);
+            clockRow.bind(location);
+            tickEngine.register(clockRow);
+            tickEngine.setSuspended(clockRow, suspended);
+            clockRow.markDirty();
+            return;
+        }
+        clockRow = new ClockRow(location);
+        rowsById.put(location.getId(), clockRow);
+        rows.add(clockRow);
+        // suspended until resumed by the next suspension update if within the canvas
+        TickEngine.getInstance().register(clockRow);
+        TickEngine.getInstance().setSuspended(clockRow, true);
+        rowsChanged();
+    }
+
+    @Override
+    public void removeClock(Location location) {
+        ClockRow clockRow = rowsById.remove(location.getId());
+        if (clockRow != null) {
+            TickEngine.getInstance().unregister(clockRow);
+            clockRow.weatherSubscription.cancel();
+            resumedRows.remove(clockRow);
+            rows.remove(clockRow);
+            rowsChanged();
+        }
+    }
+
+    @Override
+    public void swapClocks(int index1, int index2) {
+        Collections.swap(rows, index1, index2);
+        rowsChanged();
+    }
+
+    @Override
+    public void setConfigShowing(boolean configShowing) {
+        this.configShowing = configShowing;
+        updateSuspension();
+    }
+
+    @Override
+    public void setOnViewLocation(Consumer<Location> onViewLocation) {
+        this.onViewLocation = onViewLocation;
+    }
+
+    private void rowsChanged() {
+        repaintAll = true;
+        requestLayout();
+        requestRepaint();
+        requestSuspensionUpdate();
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        double scrollBarWidth = rows.size() * ROW_HEIGHT > getHeight() ? scrollBar.prefWidth(-1) : 0;
+        return snappedLeftInset() + ROW_WIDTH + scrollBarWidth + snappedRightInset();
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return snappedTopInset() + rows.size() * ROW_HEIGHT + snappedBottomInset();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+        double contentHeight = rows.size() * ROW_HEIGHT;
+        boolean needsScrollBar = contentHeight > height;
+        double scrollBarWidth = needsScrollBar ? scrollBar.prefWidth(-1) : 0;
+        scrollBar.setVisible(needsScrollBar);
+        scrollBar.resizeRelocate(width - scrollBarWidth, 0, scrollBarWidth, height);
+        double max = Math.max(0, contentHeight - height);
+        scrollBar.setMax(max);
+        scrollBar.setVisibleAmount(contentHeight == 0 ? 0 : max * height / contentHeight);
+        if (scrollBar.getValue() > max) {
+            scrollBar.setValue(max);
+        }
+
+        double canvasWidth = Math.max(0, width - scrollBarWidth);
+        if (canvas.getWidth() != canvasWidth || canvas.getHeight() != height) {
+            canvas.setWidth(canvasWidth);
+            canvas.setHeight(height);
+            repaintAll = true;
+            requestRepaint();
+            updateSuspension();
+        }
+    }
+
+    /**
+     * Many rows added or removed together (e.g. loading the locations) update the suspension once.
+     */
+    private void requestSuspensionUpdate() {
+        if (!suspensionPending) {
+            suspensionPending = true;
+            Platform.runLater(this::updateSuspension);
+        }
+    }
+
+    /**
+     * Suspends the rows leaving the canvas or covered by the config pane and resumes the rows scrolled into
+     * view, caught up to the current time and redrawn. Only the rows on screen are visited.
+     */
+    private void updateSuspension() {
+        suspensionPending = false;
+        TickEngine tickEngine = TickEngine.getInstance();
+        Set<ClockRow> visibleRows = new HashSet<>();
+        if (!configShowing) {
+            int last = lastVisibleRow();
+            for (int i = firstVisibleRow(); i <= last; i++) {
+                visibleRows.add(rows.get(i));
+            }
+        }
+        for (Iterator<ClockRow> iterator = resumedRows.iterator(); iterator.hasNext(); ) {
+            ClockRow clockRow = iterator.next();
+            if (!visibleRows.contains(clockRow)) {
+                tickEngine.setSuspended(clockRow, true);
+                iterator.remove();
+            }
+        }
+        for (ClockRow clockRow : visibleRows) {
+            if (resumedRows.add(clockRow)) {
+                tickEngine.setSuspended(clockRow, false);
+            }
+        }
+    }
+
+    private int firstVisibleRow() {
+        return (int) (scrollBar.getValue() / ROW_HEIGHT);
+    }
+
+    private int lastVisibleRow() {
+        return Math.min(rows.size() - 1, (int) Math.ceil((scrollBar.getValue() + canvas.getHeight()) / ROW_HEIGHT) - 1);
+    }
+
+    /**
+     * Many rows changing within the same tick are drawn together in one repaint.
+     */
+    private void requestRepaint() {
+        if (!repaintPending) {
+            repaintPending = true;
+            Platform.runLater(this::repaint);
+        }
+    }
+
+    private void repaint() {
+        repaintPending = false;
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        if (repaintAll) {
+            gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        }
+        double top = scrollBar.getValue();
+        int last = lastVisibleRow();
+        for (int i = firstVisibleRow(); i <= last; i++) {
+            ClockRow clockRow = rows.get(i);
+            if (repaintAll || clockRow.dirty) {
+                drawRow(gc, clockRow, i * ROW_HEIGHT - top);
+                clockRow.dirty = false;
+            }
+        }
+        repaintAll = false;
+    }
+
+    private void drawRow(GraphicsContext gc, ClockRow clockRow, double y) {
+        ClockState clockState = clockRow.clockState;
+        double width = canvas.getWidth();
+        gc.save();
+        gc.beginPath();
+        gc.rect(0, y, width, ROW_HEIGHT);
+        gc.clip();
+        gc.clearRect(0, y, width, ROW_HEIGHT);
+        gc.setFill(ROW_BACKGROUND);
+        gc.fillRect(0, y, width, ROW_HEIGHT);
+
+        // region, day and month date right aligned
+        gc.setTextAlign(TextAlignment.RIGHT);
+        gc.setTextBaseline(VPos.BASELINE);
+        gc.setFill(REGION_COLOR);
+        gc.setFont(REGION_FONT);
+        gc.fillText(clockState.getRegionText(), DATE_RIGHT_X, y + 36);
+        gc.setFill(Color.WHITE);
+        gc.setFont(DAY_FONT);
+        gc.fillText(clockState.getDayText(), DATE_RIGHT_X, y + 55);
+        gc.setFont(MONTH_DATE_FONT);
+        gc.fillText(clockState.getMonthDateText(), DATE_RIGHT_X, y + 80);
+
+        // clock face
+        double cx = FACE_CENTER_X;
+        double cy = y + FACE_CENTER_Y;
+        gc.setStroke(SHADOW_COLOR);
+        gc.setLineWidth(2);
+        gc.strokeOval(cx - 44, cy - 44, 88, 88);
+        gc.setStroke(HOUR_SHADOW_COLOR);
+        gc.setLineWidth(4);
+        gc.strokeOval(cx - 35, cy - 35, 70, 70);
+        drawSprite(gc, minuteArcSprite(clockState.getMinute()), cx, cy);
+        drawSprite(gc, hourArcSprite(clockState.getHourIndex()), cx, cy);
+        drawSprite(gc, minuteTipSprite(), cx + clockState.getMinuteTipX(), cy + clockState.getMinuteTipY());
+        drawSprite(gc, hourTipSprite(), cx + clockState.getHourTipX(), cy + clockState.getHourTipY());
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        gc.setFont(TIME_FONT);
+        gc.fillText(clockState.getTimeText(), cx, cy);
+
+        // weather
+        if (clockRow.weatherIcon != null && clockRow.weatherIcon.getProgress() >= 1 && !clockRow.weatherIcon.isError()) {
+            gc.drawImage(clockRow.weatherIcon, ICON_X, y + ICON_Y, ICON_SIZE, ICON_SIZE);
+        }
+        gc.setTextBaseline(VPos.BASELINE);
+        gc.setFont(TEMPERATURE_FONT);
+        gc.fillText(clockRow.temperatureText, ICON_X + ICON_SIZE / 2, y + ICON_Y + ICON_SIZE + 18);
+        gc.restore();
+    }
+
+    private static void drawSprite(GraphicsContext gc, Sprite sprite, double x, double y) {
+        if (sprite != null) {
+            gc.drawImage(sprite.image(), x + sprite.offsetX(), y + sprite.offsetY());
+        }
+    }
+
+    private static Sprite minuteArcSprite(int minute) {
+        if (MINUTE_ARC_SPRITES[minute] == null && HandGeometry.minuteExtentAngle(minute) != 0) {
+            Arc arc = new Arc(0, 0, HandGeometry.MINUTE_RADIUS, HandGeometry.MINUTE_RADIUS,
+                    HandGeometry.minuteStartAngle(minute), HandGeometry.minuteExtentAngle(minute));
+            arc.setFill(Color.TRANSPARENT);
+            arc.setStroke(Color.web("#2fdae0e5"));
+            arc.setStrokeWidth(3);
+            arc.setEffect(new GaussianBlur(6.93));
+            MINUTE_ARC_SPRITES[minute] = snapshot(arc);
+        }
+        return MINUTE_ARC_SPRITES[minute];
+    }
+
+    private static Sprite hourArcSprite(int hourIndex) {
+        if (HOUR_ARC_SPRITES[hourIndex] == null && HandGeometry.hourExtentAngle(hourIndex) != 0) {
+            Arc arc = new Arc(0, 0, HandGeometry.HOUR_RADIUS, HandGeometry.HOUR_RADIUS,
+                    HandGeometry.hourStartAngle(hourIndex), HandGeometry.hourExtentAngle(hourIndex));
+            arc.setFill(Color.TRANSPARENT);
+            arc.setStroke(Color.web("#de752ff7"));
+            arc.setStrokeWidth(4);
+            arc.setStrokeLineCap(StrokeLineCap.BUTT);
+            arc.setOpacity(0.91);
+            Glow glow = new Glow(0.34);
+            glow.setInput(new Bloom());
+            arc.setEffect(glow);
+            HOUR_ARC_SPRITES[hourIndex] = snapshot(arc);
+        }
+        return HOUR_ARC_SPRITES[hourIndex];
+    }
+
+    private static Sprite minuteTipSprite() {
+        if (minuteTipSprite == null) {
+            minuteTipSprite = snapshot(tip(4, Color.color(0.1843, 0.8549, 0.8784, 0.9)));
+        }
+        return minuteTipSprite;
+    }
+
+    private static Sprite hourTipSprite() {
+        if (hourTipSprite == null) {
+            hourTipSprite = snapshot(tip(5, Color.color(0.8706, 0.4588, 0.1843)));
+        }
+        return hourTipSprite;
+    }
+
+    private static Circle tip(double radius, Color color) {
+        Circle circle = new Circle(radius, new RadialGradient(0, 0.0238, 0.5, 0.5, 0.4524, true,
+                CycleMethod.NO_CYCLE, new Stop(0, Color.WHITE), new Stop(1, color)));
+        GaussianBlur blur = new GaussianBlur(3.09);
+        blur.setInput(new Glow());
+        circle.setEffect(blur);
+        return circle;
+    }
+
+    private static Sprite snapshot(Node node) {
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        Bounds bounds = node.getBoundsInParent();
+        return new Sprite(node.snapshot(parameters, null), bounds.getMinX(), bounds.getMinY());
+    }
+
+    /**
+     * One clock's state and weather driven by the {@link TickEngine}.
+     */
+    private class ClockRow implements TickEngine.Tickable {
+        private ClockState clockState;
+        private String temperatureText = "";
+        private Image weatherIcon;
+        private WeatherService.Subscription weatherSubscription;
+        private boolean dirty = true;
+
+        ClockRow(Location location) {
+            bind(location);
+        }
+
+        /**
+         * Shows a (possibly edited) location, dropping the weather of the location shown before.
+         */
+        void bind(Location location) {
+            if (weatherSubscription != null) {
+                weatherSubscription.cancel();
+            }
+            temperatureText = "";
+            weatherIcon = null;
+            clockState = new ClockState(location, WorldClockController.SMOOTH_HOUR_HAND);
+            weatherSubscription = WeatherService.getInstance().subscribe(location, this::updateWeather);
+        }
+
+        @Override
+        public long tick(long epochMillis) {
+            clockState.update(epochMillis);
+            if (clockState.isTimeChanged() || clockState.isRegionChanged() || clockState.isDayChanged()) {
+                markDirty();
+            }
+            // wake up again at the start of the next minute
+            return clockState.getNextMinuteMillis();
+        }
+
+        @Override
+        public ZoneId getZoneId() {
+            return clockState.getZoneId();
+        }
+
+        private void updateWeather(WeatherReport weatherReport) {
+            temperatureText = WorldClockController.temperatureText(clockState.getLocation(), weatherReport);
+            markDirty();
+            // the shared weather icon
+            WeatherIconCache.getInstance().get(weatherReport.icon()).thenAccept(icon -> {
+                weatherIcon = icon;
+                markDirty();
+            });
+        }
+
+        private void markDirty() {
+            dirty = true;
+            requestRepaint();
+        }
+    }
+}
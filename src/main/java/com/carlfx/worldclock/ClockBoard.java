@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import javafx.scene.layout.Region;
+
+import java.util.function.Consumer;
+
+/**
+ * The list of clocks displayed in the main window. An implementation decides how the clocks are rendered,
+ * e.g. one FXML widget per clock or all clocks drawn into one canvas. Selected at startup by the system
+ * property worldclock.renderer
+ */
+public interface ClockBoard {
+
+    enum Renderer {
+        /** a virtualized list recycling clock-widget.fxml cells */
+        FXML,
+        /** all clocks drawn into a single canvas */
+        CANVAS
+    }
+
+    /**
+     * @return the node displaying the clocks.
+     */
+    Region getView();
+
+    /**
+     * Adds a clock for the location at the end or replaces the clock of an equal location, e.g. an edited
+     * location's clock is wired again to show its city and weather.
+     * @param location location to add.
+     */
+    void addClock(Location location);
+
+    /**
+     * Removes the clock of the location.
+     * @param location location to remove.
+     */
+    void removeClock(Location location);
+
+    /**
+     * Swaps the clocks of two rows.
+     * @param index1 a row
+     * @param index2 another row
+     */
+    void swapClocks(int index1, int index2);
+
+    /**
+     * While the config pane covers the clocks they aren't visible and will be suspended.
+     * @param configShowing true if the config pane is showing.
+     */
+    void setConfigShowing(boolean configShowing);
+
+    /**
+     * @param onViewLocation called when the user asks to view a clock's location on the map (double click).
+     */
+    void setOnViewLocation(Consumer<Location> onViewLocation);
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import java.time.ZoneId;
+
+/**
+ * The display state of one clock computed from a {@link Location} and an instant without any JavaFX nodes.
+ * It holds the hour and minute, the arc angles and tip positions of both hands, the time, day, date and region
+ * texts. A state is reusable: each {@link #update(long)} overwrites the previous values and flags which parts
+ * changed so a renderer only touches what is different. Instances are not thread safe, but any number of them
+ * may be computed on any thread.
+ */
+public class ClockState {
+    private final Location location;
+    private final ClockTimeContext timeContext;
+    private final boolean smoothHourHand;
+
+    private int hour;
+    private int minute;
+    private int hourIndex;
+    private boolean timeChanged;
+    private double minuteStartAngle;
+    private double minuteExtentAngle;
+    private double minuteTipX;
+    private double minuteTipY;
+    private double hourStartAngle;
+    private double hourExtentAngle;
+    private double hourTipX;
+    private double hourTipY;
+
+    private String regionCity;
+    private String regionCountryCode;
+    private String regionText;
+    private boolean regionChanged;
+
+    public ClockState(Location location) {
+        this(location, false);
+    }
+
+    /**
+     * @param location the clock's location.
+     * @param smoothHourHand true for the hour hand to move every minute, false to jump by the hour.
+     */
+    public ClockState(Location location, boolean smoothHourHand) {
+        this.location = location;
+        this.timeContext = new ClockTimeContext(location);
+        this.smoothHourHand = smoothHourHand;
+        this.hour = -1;
+    }
+
+    /**
+     * Computes a new state.
+     * @param location the clock's location.
+     * @param epochMillis the instant to compute.
+     * @return state of the clock at the instant.
+     */
+    public static ClockState of(Location location, long epochMillis) {
+        ClockState clockState = new ClockState(location);
+        clockState.update(epochMillis);
+        return clockState;
+    }
+
+    /**
+     * Computes the state of the clock at the instant.
+     * @param epochMillis the instant to compute.
+     */
+    public void update(long epochMillis) {
+        timeContext.update(epochMillis);
+        int newHour = timeContext.getHour();
+        int newMinute = timeContext.getMinute();
+        timeChanged = newHour != hour || newMinute != minute;
+        if (timeChanged) {
+            hour = newHour;
+            minute = newMinute;
+            minuteStartAngle = HandGeometry.minuteStartAngle(minute);
+            minuteExtentAngle = HandGeometry.minuteExtentAngle(minute);
+            minuteTipX = HandGeometry.minuteTipX(minute);
+            minuteTipY = HandGeometry.minuteTipY(minute);
+
+            hourIndex = HandGeometry.hourIndex(hour, minute, smoothHourHand);
+            hourStartAngle = HandGeometry.hourStartAngle(hourIndex);
+            hourExtentAngle = HandGeometry.hourExtentAngle(hourIndex);
+            hourTipX = HandGeometry.hourTipX(hourIndex);
+            hourTipY = HandGeometry.hourTipY(hourIndex);
+        }
+
+        // only when the city or country code was edited will the region change.
+        regionChanged = location.getCity() != regionCity || location.getCountryCode() != regionCountryCode;
+        if (regionChanged) {
+            regionCity = location.getCity();
+            regionCountryCode = location.getCountryCode();
+            regionText = regionCity + " " + regionCountryCode;
+        }
+    }
+
+    public Location getLocation() {
+        return location;
+    }
+
+    public ZoneId getZoneId() {
+        return timeContext.getZoneId();
+    }
+
+    /**
+     * @return hour of a 12 hour clock 1-12.
+     */
+    public int getHour() {
+        return hour;
+    }
+
+    /**
+     * @return index into the {@link HandGeometry} hour tables of the hour hand's position.
+     */
+    public int getHourIndex() {
+        return hourIndex;
+    }
+
+    public int getMinute() {
+        return minute;
+    }
+
+    /**
+     * @return true when the hour or minute differs from the previous update.
+     */
+    public boolean isTimeChanged() {
+        return timeChanged;
+    }
+
+    /**
+     * @return time formatted as h:mm
+     */
+    public String getTimeText() {
+        return timeContext.getTimeText();
+    }
+
+    /**
+     * @return true when the last update crossed into a new day (or was the first update).
+     */
+    public boolean isDayChanged() {
+        return timeContext.isDayChanged();
+    }
+
+    /**
+     * @return long day name e.g. Sunday
+     */
+    public String getDayText() {
+        return timeContext.getDayText();
+    }
+
+    /**
+     * @return long month name and day e.g. March 19
+     */
+    public String getMonthDateText() {
+        return timeContext.getMonthDateText();
+    }
+
+    public boolean isRegionChanged() {
+        return regionChanged;
+    }
+
+    /**
+     * @return city and country code
+     */
+    public String getRegionText() {
+        return regionText;
+    }
+
+    public double getMinuteStartAngle() {
+        return minuteStartAngle;
+    }
+
+    public double getMinuteExtentAngle() {
+        return minuteExtentAngle;
+    }
+
+    public double getMinuteTipX() {
+        return minuteTipX;
+    }
+
+    /**
+     * @return y of the minute hand's tip in screen coordinates (y grows downwards).
+     */
+    public double getMinuteTipY() {
+        return minuteTipY;
+    }
+
+    public double getHourStartAngle() {
+        return hourStartAngle;
+    }
+
+    public double getHourExtentAngle() {
+        return hourExtentAngle;
+    }
+
+    public double getHourTipX() {
+        return hourTipX;
+    }
+
+    /**
+     * @return y of the hour hand's tip in screen coordinates (y grows downwards).
+     */
+    public double getHourTipY() {
+        return hourTipY;
+    }
+
+    /**
+     * @return epoch millis of the next minute boundary in the clock's zone.
+     */
+    public long getNextMinuteMillis() {
+        return timeContext.getNextMinuteMillis();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.util.Locale;
+
+/**
+ * A per location time context precompiled once from a {@link Location}. The zone is resolved up front, its
+ * offset comes from the zone's shared {@link ZoneOffsetCache}, the formatted texts are cached and the results
+ * of the last {@link #update(long)} are held in reusable fields. Updating the context for a new instant
+ * allocates nothing unless the day changes or a zone transition was crossed.
+ */
+public class ClockTimeContext {
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    /** h:mm texts of a 12 hour clock indexed by (hour % 12) * 60 + minute */
+    private static final String[] TIME_TEXTS = new String[12 * 60];
+
+    /** Long day names indexed by DayOfWeek.ordinal() */
+    private static final String[] DAY_TEXTS = new String[7];
+
+    private static final DateTimeFormatter MONTH_DATE_FORMAT = DateTimeFormatter.ofPattern("MMMM d");
+
+    static {
+        for (int i = 0; i < TIME_TEXTS.length; i++) {
+            int hour = i / 60 == 0 ? 12 : i / 60;
+            TIME_TEXTS[i] = "%d:%02d".formatted(hour, i % 60);
+        }
+        for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            DAY_TEXTS[dayOfWeek.ordinal()] = dayOfWeek.getDisplayName(TextStyle.FULL, Locale.getDefault());
+        }
+    }
+
+    private final ZoneId zoneId;
+    private final ZoneOffsetCache offsetCache;
+    private int offsetSeconds;
+
+    // results of the last update
+    private int hour;
+    private int minute;
+    private String timeText;
+    private long epochDay = Long.MIN_VALUE;
+    private boolean dayChanged;
+    private String dayText;
+    private String monthDateText;
+    private long nextMinuteMillis;
+
+    public ClockTimeContext(Location location) {
+        this(location.getZoneId());
+    }
+
+    public ClockTimeContext(ZoneId zoneId) {
+        this.zoneId = zoneId;
+        this.offsetCache = ZoneTransitionIndex.getInstance().offsetCache(zoneId);
+    }
+
+    /**
+     * Computes the local time of the instant into the context's fields.
+     * @param epochMillis the instant to compute.
+     */
+    public void update(long epochMillis) {
+        offsetSeconds = offsetCache.offsetSeconds(epochMillis);
+        long localSeconds = Math.floorDiv(epochMillis, 1000) + offsetSeconds;
+        int secondOfDay = Math.floorMod(localSeconds, SECONDS_PER_DAY);
+        int hourOfDay = secondOfDay / 3600;
+        minute = secondOfDay / 60 % 60;
+        hour = hourOfDay % 12 == 0 ? 12 : hourOfDay % 12;
+        timeText = TIME_TEXTS[(hourOfDay % 12) * 60 + minute];
+        nextMinuteMillis = (Math.floorDiv(localSeconds, 60) + 1) * 60_000 - offsetSeconds * 1000L;
+
+        long day = Math.floorDiv(localSeconds, SECONDS_PER_DAY);
+        dayChanged = day != epochDay;
+        if (dayChanged) {
+            // once a day
+            epochDay = day;
+            // 1970-01-01 was a Thursday
+            dayText = DAY_TEXTS[Math.floorMod(day + 3, 7)];
+            monthDateText = MONTH_DATE_FORMAT.format(LocalDate.ofEpochDay(day));
+        }
+    }
+
+    public ZoneId getZoneId() {
+        return zoneId;
+    }
+
+    /**
+     * @return hour of a 12 hour clock 1-12.
+     */
+    public int getHour() {
+        return hour;
+    }
+
+    public int getMinute() {
+        return minute;
+    }
+
+    /**
+     * @return time formatted as h:mm
+     */
+    public String getTimeText() {
+        return timeText;
+    }
+
+    /**
+     * @return true when the last update crossed into a new day (or was the first update).
+     */
+    public boolean isDayChanged() {
+        return dayChanged;
+    }
+
+    /**
+     * @return long day name e.g. Sunday
+     */
+    public String getDayText() {
+        return dayText;
+    }
+
+    /**
+     * @return long month name and day e.g. March 19
+     */
+    public String getMonthDateText() {
+        return monthDateText;
+    }
+
+    /**
+     * @return epoch millis of the next minute boundary in this zone.
+     */
+    public long getNextMinuteMillis() {
+        return nextMinuteMillis;
+    }
+}
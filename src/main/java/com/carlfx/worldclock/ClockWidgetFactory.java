@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import javafx.fxml.FXMLLoader;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Group;
+import javafx.scene.Parent;
+import javafx.scene.control.Label;
+import javafx.scene.effect.Bloom;
+import javafx.scene.effect.GaussianBlur;
+import javafx.scene.effect.Glow;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.CycleMethod;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.paint.Stop;
+import javafx.scene.shape.Arc;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.shape.StrokeType;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+import java.io.IOException;
+
+/**
+ * Creates clock widgets. The nodes of clock-widget.fxml are built in code instead of parsing the FXML for every
+ * clock (XML parsing and reflection). Ids, style classes and stylesheets match the ones set by the FXMLLoader, the
+ * stylesheet is parsed once and shared by all widgets. Keep {@link #create()} in sync with clock-widget.fxml which
+ * remains the design of the widget (e.g. edited in Scene Builder).
+ */
+public class ClockWidgetFactory {
+    private static final ClockWidgetFactory INSTANCE = new ClockWidgetFactory();
+
+    // paints and fonts are immutable and shared by all widgets
+    private static final Color REGION_COLOR = Color.web("#ff9d00");
+    private static final Color MINUTE_SHADOW_COLOR = Color.web("#403939");
+    private static final Color HOUR_SHADOW_COLOR = Color.web("#403939db");
+    private static final Color MINUTE_ARC_COLOR = Color.web("#2fdae0e5");
+    private static final Color HOUR_ARC_COLOR = Color.web("#de752ff7");
+    private static final RadialGradient MINUTE_TIP_FILL = tipFill(Color.color(0.18431372940540314, 0.8549019694328308, 0.8784313797950745, 0.8999999761581421));
+    private static final RadialGradient HOUR_TIP_FILL = tipFill(Color.color(0.8705882430076599, 0.4588235318660736, 0.18431372940540314));
+    private static final Font MONTH_DATE_FONT = Font.font("Roboto Thin", 18);
+    private static final Font CLOCK_TIME_FONT = Font.font("Roboto Light", 18);
+    private static final Font TEMPERATURE_FONT = Font.font("Roboto Medium", 18);
+    // stylesheets="@styles.css" of clock-widget.fxml
+    private static final String STYLESHEET = App.class.getResource("styles.css").toExternalForm();
+
+    /**
+     * A clock widget's root node and its controller.
+     */
+    public record ClockWidget(Parent view, WorldClockController controller) {}
+
+    public static ClockWidgetFactory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Builds the nodes of clock-widget.fxml and wires them to a new controller.
+     * @return a new clock widget.
+     */
+    public ClockWidget create() {
+        // date
+        Label locationRegion = new Label();
+        locationRegion.setId("region-country");
+        locationRegion.setAlignment(Pos.CENTER);
+        locationRegion.setMaxWidth(Region.USE_PREF_SIZE);
+        locationRegion.setPrefHeight(17);
+        locationRegion.setTextAlignment(TextAlignment.CENTER);
+        locationRegion.setTextFill(REGION_COLOR);
+
+        Label day = new Label();
+        day.setId("day");
+        day.getStyleClass().add("date-day");
+        day.setTextFill(Color.WHITE);
+
+        Label monthDate = new Label();
+        monthDate.setId("monthDate");
+        monthDate.getStyleClass().add("date-month");
+        monthDate.getStylesheets().add(STYLESHEET);
+        monthDate.setTextFill(Color.WHITE);
+        monthDate.setFont(MONTH_DATE_FONT);
+
+        VBox date = new VBox(locationRegion, day, monthDate);
+        date.setAlignment(Pos.CENTER_RIGHT);
+        date.setPrefHeight(104);
+        date.setPrefWidth(149);
+        date.setStyle("-fx-background-color: #00000000;");
+        date.getStyleClass().add("date-background");
+        date.getStylesheets().add(STYLESHEET);
+        date.setPadding(new Insets(0, 10, 0, 0));
+
+        // clock face
+        Circle minuteHandShadow = new Circle(45, Color.web("#1f1f1f00"));
+        minuteHandShadow.setId("minute-hand-shadow");
+        minuteHandShadow.setStroke(MINUTE_SHADOW_COLOR);
+        minuteHandShadow.setStrokeType(StrokeType.INSIDE);
+        minuteHandShadow.setStrokeWidth(2);
+
+        Arc minuteHandArc = new Arc(0, 0, 45, 45, 156, 294);
+        minuteHandArc.setId("minute-hand-arc");
+        minuteHandArc.setFill(Color.web("#ff215900"));
+        minuteHandArc.setStroke(MINUTE_ARC_COLOR);
+        minuteHandArc.setStrokeWidth(3);
+        minuteHandArc.setEffect(new GaussianBlur(6.93));
+
+        Circle hourHandShadow = new Circle(35, Color.web("#1f93ff00"));
+        hourHandShadow.setId("hour-hand-shadow");
+        hourHandShadow.setStroke(HOUR_SHADOW_COLOR);
+        hourHandShadow.setStrokeWidth(4);
+
+        Arc hourHandArc = new Arc(0, 0, 35, 35, 0, 90);
+        hourHandArc.setId("hour-hand-arc");
+        hourHandArc.setFill(Color.web("#1f93ff00"));
+        hourHandArc.setOpacity(0.91);
+        hourHandArc.setStroke(HOUR_ARC_COLOR);
+        hourHandArc.setStrokeLineCap(StrokeLineCap.BUTT);
+        hourHandArc.setStrokeLineJoin(StrokeLineJoin.ROUND);
+        hourHandArc.setStrokeMiterLimit(0);
+        hourHandArc.setStrokeWidth(4);
+        Glow hourHandGlow = new Glow(0.34);
+        hourHandGlow.setInput(new Bloom());
+        hourHandArc.setEffect(hourHandGlow);
+
+        Circle minuteHandTip = tip("minute-hand-tip", 4, MINUTE_TIP_FILL);
+        minuteHandTip.setTranslateX(-41.109);
+        minuteHandTip.setTranslateY(-18.0);
+        Circle hourHandTip = tip("hour-hand-tip", 5, HOUR_TIP_FILL);
+        hourHandTip.setTranslateX(35);
+
+        Text clockTime = new Text();
+        clockTime.setId("clockTime");
+        clockTime.setFill(Color.WHITE);
+        clockTime.setStrokeType(StrokeType.OUTSIDE);
+        clockTime.setStrokeWidth(0);
+        clockTime.getStyleClass().add("clock-digits");
+        clockTime.setTextAlignment(TextAlignment.CENTER);
+        clockTime.setFont(CLOCK_TIME_FONT);
+
+        StackPane face = new StackPane(
+                new Group(minuteHandShadow, minuteHandArc, hourHandShadow, hourHandArc, minuteHandTip, hourHandTip),
+                new Group(),
+                clockTime);
+        face.setMaxHeight(55);
+        face.setMaxWidth(Region.USE_PREF_SIZE);
+
+        // weather
+        ImageView weatherIconImageView = new ImageView();
+        weatherIconImageView.setId("weatherIconImageView");
+        weatherIconImageView.setFitHeight(55);
+        weatherIconImageView.setFitWidth(55);
+        weatherIconImageView.setPickOnBounds(true);
+        weatherIconImageView.setPreserveRatio(true);
+        VBox.setMargin(weatherIconImageView, new Insets(10, 5, 0, 0));
+
+        Text temperatureText = new Text();
+        temperatureText.setId("temperatureText");
+        temperatureText.setFill(Color.WHITE);
+        temperatureText.setStrokeType(StrokeType.OUTSIDE);
+        temperatureText.setStrokeWidth(0);
+        temperatureText.getStyleClass().add("temperature");
+        temperatureText.setFont(TEMPERATURE_FONT);
+
+        VBox weather = new VBox(weatherIconImageView, temperatureText);
+        weather.setAlignment(Pos.TOP_CENTER);
+
+        HBox clockView = new HBox(date, face, weather);
+        clockView.setPrefWidth(314);
+        clockView.getStyleClass().add("clock-background");
+        clockView.getStylesheets().add(STYLESHEET);
+
+        WorldClockController controller = new WorldClockController(minuteHandArc, minuteHandTip, hourHandArc,
+                hourHandTip, clockTime, locationRegion, day, monthDate, temperatureText, weatherIconImageView);
+        return new ClockWidget(clockView, controller);
+    }
+
+    /**
+     * Loads a clock widget by parsing clock-widget.fxml, the way clocks were created before the factory.
+     * @return a new clock widget.
+     * @throws IOException when clock-widget.fxml can't be loaded.
+     */
+    public ClockWidget load() throws IOException {
+        FXMLLoader fxmlLoader = new FXMLLoader(App.class.getResource("clock-widget.fxml"));
+        Parent clockView = fxmlLoader.load();
+        return new ClockWidget(clockView, fxmlLoader.getController());
+    }
+
+    private static Circle tip(String id, double radius, RadialGradient fill) {
+        Circle tip = new Circle(radius, fill);
+        tip.setId(id);
+        tip.setStroke(Color.TRANSPARENT);
+        tip.setStrokeType(StrokeType.INSIDE);
+        GaussianBlur blur = new GaussianBlur(3.09);
+        blur.setInput(new Glow());
+        tip.setEffect(blur);
+        return tip;
+    }
+
+    private static RadialGradient tipFill(Color color) {
+        return new RadialGradient(0, 0.023809523809523725, 0.5, 0.5, 0.45238095238095233, true,
+                CycleMethod.NO_CYCLE, new Stop(0, Color.WHITE), new Stop(1, color));
+    }
+}
@@ -18,7 +18,6 @@
  */
 package com.carlfx.worldclock;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
@@ -29,11 +28,9 @@ import javafx.scene.control.*;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -75,6 +72,10 @@ public class ConfigLocationsController {
     private ListView<Location> locationsListView;
 
     private ObservableList<Location> locations;
+    // the list view's items by location id
+    private final Map<String, Location> listViewItemsById = new HashMap<>();
+
+    private final LocationSaver locationSaver = LocationSaver.getInstance();
 
     // Subscribers of Location add and remove will respond.
     private ListChangeListener<Location> listChangeListener = new ListChangeListener<>() {
@@ -117,6 +118,11 @@ public class ConfigLocationsController {
 
     @FXML
     private void handleSaveLocationAction(ActionEvent actionEvent) {
+        if (gmtErrorOverlayIcon.isVisible()) {
+            // an invalid timezone would be persisted and break the clocks on the next start
+            gmtOffset.requestFocus();
+            return;
+        }
         Location location = locationsListView.getSelectionModel().getSelectedItem();
         String stateSelected = usStates.getSelectionModel().getSelectedItem();
         String cityStr = "";
@@ -136,6 +142,7 @@ public class ConfigLocationsController {
                 location.setLatLong(latitude.getText(), longitude.getText());
             }
             WorldClockEvent.trigger(longitude, WorldClockEvent.LOCATION_UPDATE, location);
+            locationSaver.update(location);
         } else {
 
             if (stateSelected != null && !"".equals(stateSelected)) {
@@ -152,40 +159,17 @@ public class ConfigLocationsController {
                 location.setCity(cityStr);
             }
             locations.add(location);
+            locationSaver.add(location);
         }
-        saveLocations();
     }
 
-    private void saveLocations() {
-        // check if file exists
-        File file = new File(System.getProperty("user.home") + File.separatorChar + "worldclock");
-
-        if (!file.exists()) {
-            file.mkdirs();
-        }
-        File locationsJson = new File(String.format("%s%s%s%s%s",
-                System.getProperty("user.home"),
-                File.separatorChar,
-                "worldclock",
-                File.separatorChar,
-                "locations.json"));
-        try (FileWriter fileWriter = new FileWriter(locationsJson)){
-            ObjectMapper objectMapper = new ObjectMapper();
-            List<Location> locationList = locationsListView.getItems();
-            objectMapper.writeValue(fileWriter, locationList);
-            System.out.println("Successfully wrote to the file.");
-        } catch (IOException e) {
-            System.out.println("An error occurred.");
-            e.printStackTrace();
-        }
-    }
     @FXML
     private void handleDeleteLocationAction(ActionEvent actionEvent) {
         Location location = locationsListView.getSelectionModel().getSelectedItem();
         if (location != null) {
             locations.remove(location);
+            locationSaver.remove(location);
         }
-        saveLocations();
     }
     @FXML
     private void handleMoveUpLocationAction(ActionEvent actionEvent) {
@@ -198,8 +182,8 @@ public class ConfigLocationsController {
             locationsListView.getItems().set(index + 1, prevLocation);
             locationsListView.getSelectionModel().select(index);
             WorldClockEvent.trigger(gmtOffset, WorldClockEvent.LOCATION_MOVE_UP, new RowLocation(index, location));
+            locationSaver.move(location, index);
         }
-        saveLocations();
     }
     @FXML
     private void handleMoveDownLocationAction(ActionEvent actionEvent) {
@@ -212,42 +196,21 @@ public class ConfigLocationsController {
             locationsListView.getItems().set(index - 1, nextLocation);
             locationsListView.getSelectionModel().select(index);
             WorldClockEvent.trigger(gmtOffset, WorldClockEvent.LOCATION_MOVE_DOWN, new RowLocation(index, location));
+            locationSaver.move(location, index);
         }
-        saveLocations();
     }
 
     private void removeListViewItem(Location location) {
-        Iterator<Location> itr = locationsListView.getItems().iterator();
-        while (itr.hasNext()) {
-            Location loc = itr.next();
-            if (loc.equals(location)) {
-                itr.remove();
-            }
+        if (listViewItemsById.remove(location.getId()) != null) {
+            locationsListView.getItems().remove(location);
         }
-
     }
 
     private void updateListViewItem(Location updateOrAddlocation) {
-        Iterator<Location> itr = locationsListView.getItems().iterator();
-        int idx = -1;
-        boolean found = false;
-
-        while (itr.hasNext()) {
-            Location loc = itr.next();
-            idx+=1;
-            if (loc.equals(updateOrAddlocation)) {
-                found = true;
-                break;
-            }
-        }
-        if (found && locationsListView.getItems().size()-1 > 0) {
-            // replace with new location
-            locationsListView.getItems().set(idx, updateOrAddlocation);
-        } else {
+        // an edited location is the same item already in the list
+        if (listViewItemsById.put(updateOrAddlocation.getId(), updateOrAddlocation) == null) {
             locationsListView.getItems().add(updateOrAddlocation);
         }
-
-
     }
 
     private void clearForm() {
@@ -297,72 +260,6 @@ public class ConfigLocationsController {
 
         locations = FXCollections.observableArrayList();
 
-        // check if file exists
-        File file = new File(System.getProperty("user.home") + File.separatorChar + "worldclock");
-
-        if (!file.exists()) {
-            file.mkdirs();
-        }
-        File locationsJson = new File(String.format("%s%s%s%s%s",
-                System.getProperty("user.home"),
-                File.separatorChar,
-                "worldclock",
-                File.separatorChar,
-                "locations.json"));
-        if (locationsJson.exists()) {
-            try {
-                String actual = Files.readString(locationsJson.toPath());
-                if (!"".equals(actual)) {
-                    ObjectMapper objectMapper = new ObjectMapper();
-                    List<Map<String, Object>> locationArray = objectMapper.readValue(actual, List.class);
-                    for (Map<String, Object> map:locationArray) {
-                        try {
-                            Location location = null;
-
-                            if (map.containsKey("state")) {
-                                location = objectMapper.convertValue(map, USLocation.class);
-                            } else {
-                                location = objectMapper.convertValue(map, Location.class);
-                            }
-                            locations.add(location);
-
-                        } catch (Throwable th) {
-                            th.printStackTrace();
-                        }
-                    }
-                }
-
-                System.out.println("Successfully read from file.");
-            } catch (IOException e) {
-                System.out.println("An error occurred.");
-                e.printStackTrace();
-            }
-        }
-
-        if (locations.isEmpty()) {
-            TimeZone tz = TimeZone.getDefault();
-            String offsetId = "" + tz.toZoneId().getRules().getOffset(Instant.now()).getTotalSeconds()/60/60;
-
-            String city = "Home";
-            String state = "";
-
-            String countryCode = Locale.getDefault().getCountry();
-            if ("US".equalsIgnoreCase(countryCode)) {
-                USLocation usLocation = new USLocation(offsetId, city, state, 3.3f, Location.TEMP_STD.CELSIUS);
-                locations.add(usLocation);
-            } else {
-                String zoneId = tz.getID();
-                if (zoneId.lastIndexOf("/") > -1) {
-                    city = zoneId.substring(zoneId.lastIndexOf("/") + 1);
-                } else {
-                    city = zoneId;
-                }
-                locations.add(new Location(offsetId, city, countryCode, 3.3f, Location.TEMP_STD.CELSIUS));
-            }
-        }
-
-        locations.addListener(listChangeListener);
-
         // Populate US states combo
         populateStates();
 
@@ -378,10 +275,11 @@ public class ConfigLocationsController {
                       String row = location.getTimezone() + " " + location.getFullLocationName();
                       label.setText(row);
                       setText(row);
+                      String zone = location.getZoneId() instanceof ZoneOffset ? "GMT " + location.getTimezone() : location.getTimezone();
                       if (location.getLatLong() != null) {
-                          tooltip.setText("%s \n GMT %s \nlat/lon (%.5f, %.5f)\n".formatted(location.getFullLocationName(), location.getTimezone(), location.getLatitude(), location.getLongitude()));
+                          tooltip.setText("%s \n %s \nlat/lon (%.5f, %.5f)\n".formatted(location.getFullLocationName(), zone, location.getLatitude(), location.getLongitude()));
                       } else {
-                          tooltip.setText("%s \n GMT %s \n".formatted(location.getFullLocationName(), location.getTimezone()));
+                          tooltip.setText("%s \n %s \n".formatted(location.getFullLocationName(), zone));
                       }
                       setTooltip(tooltip);
                   } else {
@@ -390,8 +288,7 @@ public class ConfigLocationsController {
               }
             };
         });
-        locationsListView.getItems().addAll(locations);
-        addValidationRangeCheckInt(-12, 12, gmtOffset, gmtErrorOverlayIcon);
+        addValidationTimezone(-12, 12, gmtOffset, gmtErrorOverlayIcon);
         addValidationRangeCheckDouble(-90, 90, latitude, latitudeErrorOverlayIcon);
         addValidationRangeCheckDouble(-180, 180, longitude, longitudeErrorOverlayIcon);
 
@@ -404,6 +301,60 @@ public class ConfigLocationsController {
         });
     }
 
+    /**
+     * Fills the config with the stored locations or a Home location when none are stored yet. Changes afterwards
+     * are published as location events and saved.
+     * @param storedLocations locations read by {@link #loadStoredLocations()}.
+     */
+    public void initLocations(List<Location> storedLocations) {
+        locations.addAll(storedLocations);
+
+        if (locations.isEmpty()) {
+            TimeZone tz = TimeZone.getDefault();
+            // the zone id (e.g. Europe/Madrid) follows daylight saving time changes
+            String offsetId = tz.getID();
+
+            String city = "Home";
+            String state = "";
+
+            String countryCode = Locale.getDefault().getCountry();
+            if ("US".equalsIgnoreCase(countryCode)) {
+                USLocation usLocation = new USLocation(offsetId, city, state, 3.3f, Location.TEMP_STD.CELSIUS);
+                locations.add(usLocation);
+            } else {
+                String zoneId = tz.getID();
+                if (zoneId.lastIndexOf("/") > -1) {
+                    city = zoneId.substring(zoneId.lastIndexOf("/") + 1);
+                } else {
+                    city = zoneId;
+                }
+                locations.add(new Location(offsetId, city, countryCode, 3.3f, Location.TEMP_STD.CELSIUS));
+            }
+            // later changes are saved as changes of the stored Home location
+            locationSaver.add(locations.get(0));
+        }
+
+        locations.addListener(listChangeListener);
+        locations.forEach(location -> listViewItemsById.put(location.getId(), location));
+        locationsListView.getItems().addAll(locations);
+    }
+
+    /**
+     * Reads the locations saved by the config, being the snapshot and the changes journaled since.
+     * @return the stored locations or an empty list when none can be read.
+     */
+    public static List<Location> loadStoredLocations() {
+        try {
+            List<Location> storedLocations = LocationJournal.getInstance().load();
+            System.out.println("Successfully read from file.");
+            return storedLocations;
+        } catch (IOException e) {
+            System.out.println("An error occurred.");
+            e.printStackTrace();
+            return List.of();
+        }
+    }
+
     private void addValidationRangeCheckDouble(double min, double max, TextField field, Button errorOverlayIcon) {
         errorOverlayIcon.setVisible(false);
         field.textProperty().addListener((observable, oldValue, newValue) -> {
@@ -422,22 +373,27 @@ public class ConfigLocationsController {
         });
     }
 
-    private void addValidationRangeCheckInt(int min, int max, TextField field, Button errorOverlayIcon) {
+    /**
+     * A timezone is either a zone id such as Europe/Madrid or a GMT offset in hours within the range.
+     */
+    private void addValidationTimezone(int min, int max, TextField field, Button errorOverlayIcon) {
         errorOverlayIcon.setVisible(false);
         field.textProperty().addListener((observable, oldValue, newValue) -> {
             try {
-                String str = "0";
-                if (!"".equals(newValue.trim())) {
-                    str = newValue;
+                ZoneId zoneId = Location.toZoneId(newValue);
+                if (zoneId instanceof ZoneOffset zoneOffset) {
+                    int hours = zoneOffset.getTotalSeconds() / 3600;
+                    errorOverlayIcon.setVisible((hours < min || hours > max));
+                } else {
+                    errorOverlayIcon.setVisible(false);
                 }
-                Integer value = Integer.parseInt(str.trim());
-                errorOverlayIcon.setVisible((value < min || value > max));
             } catch (Exception e) {
                 errorOverlayIcon.setVisible(true);
             }
 
         });
     }
+
     private void stopTasks(List<TimerTask> timersTasks) {
         timersTasks.forEach(timerTask -> timerTask.cancel());
         timersTasks.clear();
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.Parent;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.Region;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Displays clock widgets (clock-widget.fxml) in a virtualized list. Only the cells visible in the list are created and
+ * recycled while scrolling, each cell's clock is wired again to the location scrolled into view. Clocks of cells
+ * not showing a location or covered by the config pane are suspended. Clocks of cells discarded by the list are
+ * unregistered from the {@link TickEngine}.
+ */
+public class FxmlClockBoard implements ClockBoard {
+    // height of clock-widget.fxml
+    static final double CLOCK_HEIGHT = 104;
+    // width of clock-widget.fxml plus room for the scroll bar
+    static final double CLOCK_LIST_WIDTH = 314 + 16;
+
+    private final ObservableList<Location> clockLocations = FXCollections.observableArrayList();
+    private final Map<String, Location> clockLocationsById = new HashMap<>();
+    private final ListView<Location> listView = new ListView<>(clockLocations);
+    // the cells of the list, a cell discarded by the list (e.g. when refreshed) is removed
+    private final Set<ClockCell> clockCells = new HashSet<>();
+    private final Runnable updateClockVisibility = this::updateClockVisibility;
+    private boolean configShowing;
+    private boolean clockVisibilityDirty = true;
+    private Consumer<Location> onViewLocation = location -> {};
+
+    public FxmlClockBoard() {
+        listView.getStyleClass().add("clock-list");
+        listView.setFixedCellSize(CLOCK_HEIGHT);
+        listView.setPrefWidth(CLOCK_LIST_WIDTH);
+        listView.setPlaceholder(new Region());
+        listView.setFocusTraversable(false);
+        listView.setCellFactory(view -> new ClockCell());
+
+        // Suspend clocks not visible after the layout has settled and resume when visible again.
+        listView.sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (oldScene != null) {
+                oldScene.removePostLayoutPulseListener(updateClockVisibility);
+            }
+            if (newScene != null) {
+                newScene.addPostLayoutPulseListener(updateClockVisibility);
+            }
+        });
+    }
+
+    @Override
+    public Region getView() {
+        return listView;
+    }
+
+    @Override
+    public void addClock(Location location) {
+        if (clockLocationsById.put(location.getId(), location) != null) {
+            // an edited location is the same item already in the list, so only the cell showing it is updated
+            for (ClockCell clockCell : clockCells) {
+                if (location.equals(clockCell.boundLocation)) {
+                    clockCell.bind(location);
+                }
+            }
+        } else {
+            clockLocations.add(location);
+        }
+    }
+
+    @Override
+    public void removeClock(Location location) {
+        if (clockLocationsById.remove(location.getId()) != null) {
+            clockLocations.remove(location);
+        }
+    }
+
+    @Override
+    public void swapClocks(int index1, int index2) {
+        Collections.swap(clockLocations, index1, index2);
+    }
+
+    @Override
+    public void setConfigShowing(boolean configShowing) {
+        this.configShowing = configShowing;
+        invalidateClockVisibility();
+    }
+
+    @Override
+    public void setOnViewLocation(Consumer<Location> onViewLocation) {
+        this.onViewLocation = onViewLocation;
+    }
+
+    private void invalidateClockVisibility() {
+        clockVisibilityDirty = true;
+        Platform.requestNextPulse();
+    }
+
+    /**
+     * Suspends the clocks of cells not showing a location (e.g. kept aside by the list for reuse) or covered by
+     * the config pane. Clocks becoming visible again are resumed and caught up to the current time.
+     */
+    private void updateClockVisibility() {
+        if (!clockVisibilityDirty) {
+            return;
+        }
+        clockVisibilityDirty = false;
+        for (ClockCell clockCell : clockCells) {
+            boolean visible = !configShowing && !clockCell.isEmpty() && clockCell.isVisible();
+            TickEngine.getInstance().setSuspended(clockCell.controller, !visible);
+        }
+    }
+
+    /**
+     * A recycled cell displaying one clock widget. The clock is registered with the {@link TickEngine} while
+     * the cell is part of the list and shows a location.
+     */
+    private class ClockCell extends ListCell<Location> {
+        private final Parent clockView;
+        private final WorldClockController controller;
+        private Location boundLocation;
+
+        ClockCell() {
+            ClockWidgetFactory.ClockWidget clockWidget = ClockWidgetFactory.getInstance().create();
+            clockView = clockWidget.view();
+            controller = clockWidget.controller();
+            setText(null);
+            setOnMouseClicked(mouseEvent -> {
+                if (mouseEvent.getClickCount() == 2 && !isEmpty()) {
+                    onViewLocation.accept(getItem());
+                }
+            });
+            visibleProperty().addListener(observable -> invalidateClockVisibility());
+            parentProperty().addListener((observable, oldParent, newParent) -> {
+                if (newParent == null) {
+                    // discarded by the list, e.g. when resized or refreshed
+                    clockCells.remove(this);
+                    unbind();
+                } else {
+                    clockCells.add(this);
+                    if (!isEmpty() && getItem() != null) {
+                        bind(getItem());
+                    }
+                }
+                invalidateClockVisibility();
+            });
+        }
+
+        @Override
+        protected void updateItem(Location location, boolean empty) {
+            super.updateItem(location, empty);
+            if (empty || location == null) {
+                unbind();
+                setGraphic(null);
+            } else {
+                if (location != boundLocation && getParent() != null) {
+                    // wire the recycled clock to the location scrolled into view
+                    bind(location);
+                }
+                setGraphic(clockView);
+            }
+            invalidateClockVisibility();
+        }
+
+        private void bind(Location location) {
+            boundLocation = location;
+            TickEngine.getInstance().unregister(controller);
+            controller.init(location);
+            TickEngine.getInstance().register(controller);
+        }
+
+        private void unbind() {
+            boundLocation = null;
+            TickEngine.getInstance().unregister(controller);
+            controller.dispose();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+/**
+ * Precomputed geometry of the clock hands shared by all clocks. The minute hand has 60 positions and the
+ * hour hand 720 (12 hours * 60 minutes) so it can move smoothly or jump by the hour. For each position the
+ * arc's start angle and extent (counter clockwise, zero degrees at 3 o'clock like a JavaFX Arc) and the
+ * tip's x, y are held. The tip's y is in screen coordinates (y grows downwards).
+ */
+public final class HandGeometry {
+    public static final double MINUTE_RADIUS = 45.0;
+    public static final double HOUR_RADIUS = 35.0;
+
+    private static final double[] MINUTE_START_ANGLE = new double[60];
+    private static final double[] MINUTE_EXTENT_ANGLE = new double[60];
+    private static final double[] MINUTE_TIP_X = new double[60];
+    private static final double[] MINUTE_TIP_Y = new double[60];
+
+    private static final double[] HOUR_START_ANGLE = new double[12 * 60];
+    private static final double[] HOUR_EXTENT_ANGLE = new double[12 * 60];
+    private static final double[] HOUR_TIP_X = new double[12 * 60];
+    private static final double[] HOUR_TIP_Y = new double[12 * 60];
+
+    static {
+        for (int minute = 0; minute < 60; minute++) {
+            // 360 / 60 = 6 degrees for each minute tick on the clock
+            int degrees = (60 - minute) * 6;
+
+            // add 90 degrees to position start at the 12'o clock position.
+            MINUTE_START_ANGLE[minute] = degrees + 90;
+            // make the extent angle counter clockwise to the 12'o clock position
+            MINUTE_EXTENT_ANGLE[minute] = 360 - degrees;
+            MINUTE_TIP_X[minute] = tipX(MINUTE_START_ANGLE[minute], MINUTE_RADIUS);
+            MINUTE_TIP_Y[minute] = tipY(MINUTE_START_ANGLE[minute], MINUTE_RADIUS);
+        }
+        for (int i = 0; i < HOUR_START_ANGLE.length; i++) {
+            // 360 / 12 = 30 degrees for each hour and half a degree for each minute
+            double degrees = 360 - (i / 60) * 30 - (i % 60) * 0.5;
+
+            HOUR_START_ANGLE[i] = (degrees + 90) % 360;
+            HOUR_EXTENT_ANGLE[i] = (360 - degrees) % 360;
+            HOUR_TIP_X[i] = tipX(HOUR_START_ANGLE[i], HOUR_RADIUS);
+            HOUR_TIP_Y[i] = tipY(HOUR_START_ANGLE[i], HOUR_RADIUS);
+        }
+    }
+
+    private HandGeometry() {
+    }
+
+    /**
+     * The angle in degrees creating a point on the unit circle multiplied by the radius.
+     */
+    private static double tipX(double angDegrees, double radius) {
+        return Math.cos(Math.toRadians(angDegrees)) * radius;
+    }
+
+    private static double tipY(double angDegrees, double radius) {
+        return Math.sin(Math.toRadians(angDegrees)) * radius * -1;
+    }
+
+    /**
+     * Index of an hour hand position.
+     * @param hour hour of a 12 or 24 hour clock.
+     * @param minute minute of the hour 0-59
+     * @param smooth true for the hour hand to move every minute, false to jump by the hour.
+     * @return index used for the hour hand lookups.
+     */
+    public static int hourIndex(int hour, int minute, boolean smooth) {
+        return (hour % 12) * 60 + (smooth ? minute : 0);
+    }
+
+    public static double minuteStartAngle(int minute) {
+        return MINUTE_START_ANGLE[minute];
+    }
+
+    public static double minuteExtentAngle(int minute) {
+        return MINUTE_EXTENT_ANGLE[minute];
+    }
+
+    public static double minuteTipX(int minute) {
+        return MINUTE_TIP_X[minute];
+    }
+
+    public static double minuteTipY(int minute) {
+        return MINUTE_TIP_Y[minute];
+    }
+
+    public static double hourStartAngle(int hourIndex) {
+        return HOUR_START_ANGLE[hourIndex];
+    }
+
+    public static double hourExtentAngle(int hourIndex) {
+        return HOUR_EXTENT_ANGLE[hourIndex];
+    }
+
+    public static double hourTipX(int hourIndex) {
+        return HOUR_TIP_X[hourIndex];
+    }
+
+    public static double hourTipY(int hourIndex) {
+        return HOUR_TIP_Y[hourIndex];
+    }
+}
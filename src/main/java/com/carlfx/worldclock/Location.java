@@ -18,13 +18,20 @@
  */
 package com.carlfx.worldclock;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.Arrays;
+import java.util.UUID;
 
 // TODO convert this to the new Records
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Location {
+    // stable identity of the location (persisted) while the city or country may be edited.
+    private String id;
     private String clockTime;
     private String timezone;
     private String city;
@@ -88,12 +95,67 @@ public class Location {
         this.tempType = tempType;
     }
 
+    /**
+     * Copies the location's fields.
+     */
+    protected Location(Location other) {
+        this.id = other.getId();
+        this.clockTime = other.clockTime;
+        this.timezone = other.timezone;
+        this.city = other.city;
+        this.country = other.country;
+        this.countryCode = other.countryCode;
+        this.latLong = other.latLong != null ? other.latLong.clone() : null;
+        this.weatherImageUrl = other.weatherImageUrl;
+        this.temperature = other.temperature;
+        this.tempType = other.tempType;
+    }
+
+    /**
+     * @return a snapshot of this location, e.g. to be saved while this location is being edited.
+     */
+    public Location copy() {
+        return new Location(this);
+    }
+
+    /**
+     * A location is identified by its id, e.g. a renamed city is still the same location.
+     */
     @Override
     public boolean equals(Object other) {
-        if (other == null) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Location)) {
             return false;
         }
-        return getFullLocationName().equals( ((Location) other).getFullLocationName());
+        return getId().equals(((Location) other).getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getId().hashCode();
+    }
+
+    /**
+     * @return the persisted id or a new random id for a new location (or one saved before locations had ids).
+     */
+    public String getId() {
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+        }
+        return id;
+    }
+
+    /**
+     * @return false for a location read from a file saved before locations had ids and not asked for its id yet.
+     */
+    boolean hasId() {
+        return id != null;
+    }
+
+    public void setId(String id) {
+        this.id = id;
     }
 
     public String getFullLocationName() {
@@ -116,6 +178,43 @@ public class Location {
         this.timezone = timezone;
     }
 
+    /**
+     * Resolves the timezone being either an IANA zone id such as "America/New_York" or a legacy GMT offset
+     * in hours such as "-5", "GMT+1" or blank (GMT). An unknown zone id or an offset out of range falls back
+     * to UTC so a bad value cannot keep the clocks from being built.
+     * @return The zone id or a fixed zone offset for legacy GMT offsets.
+     */
+    @JsonIgnore
+    public ZoneId getZoneId() {
+        try {
+            return toZoneId(timezone);
+        } catch (DateTimeException e) {
+            System.out.println("Invalid timezone '" + timezone + "' for " + getFullLocationName() + ", using GMT. " + e.getMessage());
+            return ZoneOffset.UTC;
+        }
+    }
+
+    /**
+     * Resolves a timezone the same way as {@link #getZoneId()} without falling back to UTC.
+     * @param timezone An IANA zone id or a legacy GMT offset in hours.
+     * @return The zone id or a fixed zone offset for legacy GMT offsets.
+     * @throws DateTimeException when the zone id is unknown or the offset is out of range.
+     */
+    static ZoneId toZoneId(String timezone) {
+        String gmtOffset = timezone == null ? "" : timezone.trim();
+        if (gmtOffset.startsWith("GMT")) {
+            gmtOffset = gmtOffset.substring(3).trim();
+        }
+        if ("".equals(gmtOffset)) {
+            return ZoneOffset.UTC;
+        }
+        try {
+            return ZoneOffset.ofHours(Integer.parseInt(gmtOffset));
+        } catch (NumberFormatException e) {
+            return ZoneId.of(timezone.trim());
+        }
+    }
+
     public String getCity() {
         return city;
     }
@@ -196,7 +295,8 @@ public class Location {
     @Override
     public String toString() {
         return "Location{" +
-                "clockTime='" + clockTime + '\'' +
+                "id='" + id + '\'' +
+                ", clockTime='" + clockTime + '\'' +
                 ", timezone='" + timezone + '\'' +
                 ", city='" + city + '\'' +
                 ", country='" + country + '\'' +
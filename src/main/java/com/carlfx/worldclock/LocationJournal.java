@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores the locations as a snapshot (~/worldclock/locations.json written by the {@link LocationStore}) and a
+ * journal of the changes since (~/worldclock/locations.journal). An edit appends one JSON line to the journal
+ * whatever the number of locations. Loading replays the journal onto the snapshot.
+ * <p>
+ * Once the journal holds {@link #COMPACT_THRESHOLD} changes it's renamed to locations.journal.compacting and a
+ * background thread folds it into a new snapshot, while new changes go to a new journal. The new snapshot is
+ * written as locations.json.next before the compacted journal is deleted and the snapshot is replaced, so each
+ * change is replayed exactly once when the app exits during a compaction. The compaction is completed on the next
+ * start.
+ */
+public class LocationJournal {
+    static final int COMPACT_THRESHOLD = 1000;
+
+    private static final LocationJournal INSTANCE = new LocationJournal(new LocationStore(),
+            LocationStore.appDirectory().resolve("locations.journal"));
+
+    public enum Op {
+        ADD, UPDATE, REMOVE, MOVE
+    }
+
+    /**
+     * A change of the locations written as a line of the journal.
+     * @param op kind of change.
+     * @param id id of the changed location.
+     * @param location snapshot of the added or updated location, null when removed or moved.
+     * @param index display position of an added or moved location, -1 to add it last.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Change(Op op, String id, Location location, int index) {
+        public static Change add(Location location, int index) {
+            return new Change(Op.ADD, location.getId(), location.copy(), index);
+        }
+
+        public static Change update(Location location) {
+            return new Change(Op.UPDATE, location.getId(), location.copy(), -1);
+        }
+
+        public static Change remove(Location location) {
+            return new Change(Op.REMOVE, location.getId(), null, -1);
+        }
+
+        public static Change move(Location location, int index) {
+            return new Change(Op.MOVE, location.getId(), null, index);
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LocationStore snapshotStore;
+    private final LocationStore nextSnapshotStore;
+    private final Path journalPath;
+    private final Path compactingPath;
+    private final int compactThreshold;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "worldclock-compact");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Writer writer;
+    private int recordCount;
+    private boolean compacting;
+
+    private long appendCount;
+    private long compactionCount;
+    private long lastCompactMillis;
+
+    public static LocationJournal getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param snapshotStore the snapshot of the locations.
+     * @param journalPath journal of the changes since the snapshot.
+     */
+    public LocationJournal(LocationStore snapshotStore, Path journalPath) {
+        this(snapshotStore, journalPath, COMPACT_THRESHOLD);
+    }
+
+    LocationJournal(LocationStore snapshotStore, Path journalPath, int compactThreshold) {
+        this.snapshotStore = snapshotStore;
+        Path snapshotPath = snapshotStore.getPath();
+        this.nextSnapshotStore = new LocationStore(snapshotPath.resolveSibling(snapshotPath.getFileName() + ".next"));
+        this.journalPath = journalPath;
+        this.compactingPath = journalPath.resolveSibling(journalPath.getFileName() + ".compacting");
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * Reads the snapshot and replays the journals. Called once at startup before changes are appended.
+     * @return locations in display order.
+     * @throws IOException when the snapshot can't be read, or saved with the ids given to a snapshot without ids.
+     */
+    public synchronized List<Location> load() throws IOException {
+        if (Files.exists(nextSnapshotStore.getPath())) {
+            // the compacted journal is part of the next snapshot
+            promoteNextSnapshot();
+        }
+        List<Location> locations = snapshotStore.load();
+        if (locations.stream().anyMatch(location -> !location.hasId())) {
+            // ids given now must be found again by the journal's changes, even after exiting right away
+            locations.forEach(Location::getId);
+            snapshotStore.save(locations);
+        }
+        Replay replay = new Replay(locations);
+        replay(compactingPath, replay);
+        recordCount = replay(journalPath, replay);
+
+        if (Files.exists(compactingPath)) {
+            startCompaction();
+        }
+        return locations;
+    }
+
+    /**
+     * Appends the changes to the journal and compacts it in the background when full. Called by the
+     * {@link LocationSaver}.
+     * @param changes changes in the order made.
+     * @throws IOException when the journal can't be written.
+     */
+    public synchronized void append(List<Change> changes) throws IOException {
+        if (writer == null) {
+            writer = openWriter();
+        }
+        for (Change change : changes) {
+            writer.write(objectMapper.writeValueAsString(change));
+            writer.write('\n');
+        }
+        writer.flush();
+        appendCount += changes.size();
+        recordCount += changes.size();
+        if (recordCount >= compactThreshold && !compacting) {
+            rotate();
+        }
+    }
+
+    private Writer openWriter() throws IOException {
+        Files.createDirectories(journalPath.toAbsolutePath().getParent());
+        if (Files.exists(journalPath) && Files.size(journalPath) > 0) {
+            // a line cut short by a crash must not swallow the next change
+            try (RandomAccessFile file = new RandomAccessFile(journalPath.toFile(), "r")) {
+                file.seek(file.length() - 1);
+                if (file.read() != '\n') {
+                    Files.writeString(journalPath, "\n", StandardOpenOption.APPEND);
+                }
+            }
+        }
+        return Files.newBufferedWriter(journalPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        writer = null;
+        if (!Files.exists(compactingPath)) {
+            Files.move(journalPath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+            recordCount = 0;
+        }
+        // otherwise a failed compaction is retried first
+        startCompaction();
+    }
+
+    private void startCompaction() {
+        compacting = true;
+        compactor.submit(this::compact);
+    }
+
+    private void compact() {
+        long startNanos = System.nanoTime();
+        boolean compacted = false;
+        try {
+            List<Location> locations = snapshotStore.load();
+            replay(compactingPath, new Replay(locations));
+            nextSnapshotStore.save(locations);
+            promoteNextSnapshot();
+            compacted = true;
+        } catch (IOException e) {
+            System.out.println("An error occurred compacting " + compactingPath);
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            compacting = false;
+            if (compacted) {
+                compactionCount++;
+                lastCompactMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private void promoteNextSnapshot() throws IOException {
+        Files.deleteIfExists(compactingPath);
+        Files.move(nextSnapshotStore.getPath(), snapshotStore.getPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Applies the changes of a journal file. A line that can't be read, e.g. cut short by a crash, is skipped.
+     * @return number of lines read.
+     */
+    private int replay(Path path, Replay replay) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int lineCount = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                lineCount++;
+                try {
+                    replay.apply(toChange(line));
+                } catch (JsonProcessingException | IllegalArgumentException | ClassCastException e) {
+                    System.out.println("Skipping unreadable change in " + path + ": " + e.getMessage());
+                }
+            }
+        }
+        return lineCount;
+    }
+
+    private Change toChange(String line) throws JsonProcessingException {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = objectMapper.readValue(line, Map.class);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> locationMap = (Map<String, Object>) map.get("location");
+        Location location = locationMap != null ? snapshotStore.toLocation(locationMap) : null;
+        Number index = (Number) map.getOrDefault("index", -1);
+        return new Change(Op.valueOf((String) map.get("op")), (String) map.get("id"), location, index.intValue());
+    }
+
+    /**
+     * Locations the changes are applied to, indexed by id once. An update or a location added last is applied in
+     * constant time, a move only reindexes the locations between its old and new position.
+     */
+    static class Replay {
+        private final List<Location> locations;
+        private final Map<String, Integer> positions;
+
+        Replay(List<Location> locations) {
+            this.locations = locations;
+            this.positions = new HashMap<>(locations.size() * 2);
+            reindex(0, locations.size() - 1);
+        }
+
+        /**
+         * Applies a change by the location's id. An added location already there is replaced. A change of a
+         * missing location is ignored.
+         */
+        void apply(Change change) {
+            Integer current = positions.get(change.id());
+            switch (change.op()) {
+                case ADD -> {
+                    if (current != null) {
+                        locations.set(current, change.location());
+                    } else {
+                        int index = position(change.index());
+                        locations.add(index, change.location());
+                        reindex(index, locations.size() - 1);
+                    }
+                }
+                case UPDATE -> {
+                    if (current != null) {
+                        locations.set(current, change.location());
+                    }
+                }
+                case REMOVE -> {
+                    if (current != null) {
+                        locations.remove((int) current);
+                        positions.remove(change.id());
+                        reindex(current, locations.size() - 1);
+                    }
+                }
+                case MOVE -> {
+                    if (current != null) {
+                        Location location = locations.remove((int) current);
+                        int index = position(change.index());
+                        locations.add(index, location);
+                        reindex(Math.min(current, index), Math.max(current, index));
+                    }
+                }
+            }
+        }
+
+        private int position(int index) {
+            return index < 0 || index > locations.size() ? locations.size() : index;
+        }
+
+        private void reindex(int from, int to) {
+            for (int i = from; i <= to; i++) {
+                positions.put(locations.get(i).getId(), i);
+            }
+        }
+    }
+
+    /**
+     * @return number of changes in the journal not yet compacted into the snapshot.
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    public synchronized long getCompactionCount() {
+        return compactionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LocationJournal{" +
+                "appended=" + appendCount +
+                ", journalRecords=" + recordCount +
+                ", compactions=" + compactionCount +
+                ", lastCompactMillis=" + lastCompactMillis +
+                ", compacting=" + compacting +
+                '}';
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Saves the location changes to the {@link LocationJournal} off the JavaFX application thread. The changes made
+ * within {@link #DEBOUNCE} of the first one are appended together, so quickly moving a location up and down is
+ * written at once. A change costs the same whatever the number of locations.
+ */
+public class LocationSaver {
+    static final Duration DEBOUNCE = Duration.ofMillis(500);
+
+    private static final LocationSaver INSTANCE = new LocationSaver(LocationJournal.getInstance());
+
+    private final LocationJournal journal;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "worldclock-save");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<LocationJournal.Change> pendingChanges;
+    private long pendingSinceNanos;
+    private ScheduledFuture<?> pendingWrite;
+
+    private long requestCount;
+    private long writeCount;
+    private long failureCount;
+    private long lastWriteMillis;
+    private long maxWriteMillis;
+    private long totalWriteMillis;
+    private long maxLatencyMillis;
+
+    public static LocationSaver getInstance() {
+        return INSTANCE;
+    }
+
+    LocationSaver(LocationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Saves a new location. The requests are called on the JavaFX application thread which edits the locations.
+     * @param location location shown last.
+     */
+    public void add(Location location) {
+        request(LocationJournal.Change.add(location, -1));
+    }
+
+    public void update(Location location) {
+        request(LocationJournal.Change.update(location));
+    }
+
+    public void remove(Location location) {
+        request(LocationJournal.Change.remove(location));
+    }
+
+    /**
+     * @param location moved location.
+     * @param index new display position of the location.
+     */
+    public void move(Location location, int index) {
+        request(LocationJournal.Change.move(location, index));
+    }
+
+    private synchronized void request(LocationJournal.Change change) {
+        requestCount++;
+        if (pendingChanges == null) {
+            pendingChanges = new ArrayList<>();
+            pendingSinceNanos = System.nanoTime();
+        }
+        pendingChanges.add(change);
+        if (pendingWrite == null) {
+            pendingWrite = executor.schedule(this::write, DEBOUNCE.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the pending changes right away and waits until written, e.g. on exit.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (pendingWrite != null) {
+                pendingWrite.cancel(false);
+            }
+        }
+        try {
+            executor.submit(this::write).get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void write() {
+        List<LocationJournal.Change> changes;
+        long sinceNanos;
+        synchronized (this) {
+            changes = pendingChanges;
+            sinceNanos = pendingSinceNanos;
+            pendingChanges = null;
+            pendingWrite = null;
+        }
+        if (changes == null) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        boolean written = false;
+        try {
+            journal.append(changes);
+            written = true;
+        } catch (IOException e) {
+            System.out.println("An error occurred saving the location changes");
+            e.printStackTrace();
+        }
+        long endNanos = System.nanoTime();
+        synchronized (this) {
+            if (written) {
+                writeCount++;
+                lastWriteMillis = TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+                totalWriteMillis += lastWriteMillis;
+                maxWriteMillis = Math.max(maxWriteMillis, lastWriteMillis);
+                // from the first request until written
+                maxLatencyMillis = Math.max(maxLatencyMillis, TimeUnit.NANOSECONDS.toMillis(endNanos - sinceNanos));
+            } else {
+                failureCount++;
+                // retried before the later changes with the next request or on exit
+                if (pendingChanges != null) {
+                    changes.addAll(pendingChanges);
+                }
+                pendingChanges = changes;
+                pendingSinceNanos = sinceNanos;
+            }
+        }
+    }
+
+    /**
+     * @return number of changes requested, coalesced into writes.
+     */
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    public synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    public synchronized long getLastWriteMillis() {
+        return lastWriteMillis;
+    }
+
+    public synchronized long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LocationSaver{" +
+                "requests=" + requestCount +
+                ", writes=" + writeCount +
+                ", failures=" + failureCount +
+                ", lastWriteMillis=" + lastWriteMillis +
+                ", avgWriteMillis=" + (writeCount == 0 ? 0 : totalWriteMillis / writeCount) +
+                ", maxWriteMillis=" + maxWriteMillis +
+                ", maxLatencyMillis=" + maxLatencyMillis +
+                '}';
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the locations as a JSON array. By default the file is ~/worldclock/locations.json
+ */
+public class LocationStore {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path locationsJson;
+
+    public LocationStore() {
+        this(defaultPath());
+    }
+
+    public LocationStore(Path locationsJson) {
+        this.locationsJson = locationsJson;
+    }
+
+    /**
+     * @return the directory ~/worldclock holding the app's files.
+     */
+    public static Path appDirectory() {
+        return Path.of(System.getProperty("user.home"), "worldclock");
+    }
+
+    public static Path defaultPath() {
+        return appDirectory().resolve("locations.json");
+    }
+
+    public Path getPath() {
+        return locationsJson;
+    }
+
+    /**
+     * Reads the locations. A location having a state is read as a {@link USLocation}.
+     * @return locations or an empty list if the file doesn't exist.
+     * @throws IOException when the file can't be read or parsed.
+     */
+    public List<Location> load() throws IOException {
+        List<Location> locations = new ArrayList<>();
+        if (!Files.exists(locationsJson)) {
+            return locations;
+        }
+        String actual = Files.readString(locationsJson);
+        if ("".equals(actual)) {
+            return locations;
+        }
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> locationArray = objectMapper.readValue(actual, List.class);
+        for (Map<String, Object> map:locationArray) {
+            try {
+                locations.add(toLocation(map));
+            } catch (Throwable th) {
+                th.printStackTrace();
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * @param map a location read as JSON object, e.g. also from the {@link LocationJournal}.
+     * @return a {@link USLocation} when having a state, otherwise a location.
+     */
+    Location toLocation(Map<String, Object> map) {
+        if (map.containsKey("state")) {
+            return objectMapper.convertValue(map, USLocation.class);
+        }
+        return objectMapper.convertValue(map, Location.class);
+    }
+
+    /**
+     * Rewrites the whole file with the locations. The locations are written to a temporary file moved in place,
+     * so a crash while writing leaves the previous file intact.
+     * @param locations locations in display order.
+     * @throws IOException when the file can't be written.
+     */
+    public void save(List<Location> locations) throws IOException {
+        File directory = locationsJson.toAbsolutePath().getParent().toFile();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        Path temp = Files.createTempFile(directory.toPath(), "locations", ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                objectMapper.writeValue(writer, locations);
+            }
+            Files.move(temp, locationsJson, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
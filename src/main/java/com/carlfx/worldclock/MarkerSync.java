@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import java.util.*;
+
+/**
+ * Keeps a shadow of the markers shown by the map and turns location changes into the minimal
+ * {@link Diff} (add, move, rename and remove) for the map to apply in one call. Only the latest change
+ * of a marker since the last diff counts, so a location added and removed again never reaches the map.
+ */
+class MarkerSync {
+
+    /**
+     * A marker as shown by the map. A snapshot as locations are edited in place.
+     */
+    record Marker(String id, String name, double lat, double lon) {
+        Marker(Location location) {
+            this(location.getId(), location.getFullLocationName(), location.getLatitude(), location.getLongitude());
+        }
+    }
+
+    record Move(String id, double lat, double lon) {}
+
+    record Rename(String id, String name) {}
+
+    /**
+     * The changes to bring the map up to date.
+     */
+    record Diff(List<Marker> add, List<Move> move, List<Rename> rename, List<String> remove) {}
+
+    // markers shown by the map by location id
+    private final Map<String, Marker> shownMarkers = new HashMap<>();
+    // latest marker of each location changed since the last diff, null when removed
+    private final Map<String, Marker> changedMarkers = new LinkedHashMap<>();
+
+    /**
+     * Adds or updates the marker of a location.
+     */
+    void put(Location location) {
+        changedMarkers.put(location.getId(), new Marker(location));
+    }
+
+    void remove(Location location) {
+        changedMarkers.put(location.getId(), null);
+    }
+
+    boolean hasChanges() {
+        return !changedMarkers.isEmpty();
+    }
+
+    /**
+     * Compares the changed markers to the shown ones. The shadow is updated as if the map applied the diff.
+     * @return the changes, empty lists when the changes cancelled each other out.
+     */
+    Diff diff() {
+        List<Marker> add = new ArrayList<>();
+        List<Move> move = new ArrayList<>();
+        List<Rename> rename = new ArrayList<>();
+        List<String> remove = new ArrayList<>();
+        changedMarkers.forEach((id, marker) -> {
+            Marker shown = marker == null ? shownMarkers.remove(id) : shownMarkers.put(id, marker);
+            if (marker == null) {
+                if (shown != null) {
+                    remove.add(id);
+                }
+            } else if (shown == null) {
+                add.add(marker);
+            } else {
+                if (shown.lat() != marker.lat() || shown.lon() != marker.lon()) {
+                    move.add(new Move(id, marker.lat(), marker.lon()));
+                }
+                if (!shown.name().equals(marker.name())) {
+                    rename.add(new Rename(id, marker.name()));
+                }
+            }
+        });
+        changedMarkers.clear();
+        return new Diff(add, move, rename, remove);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Records how long the stages of the application startup took since the process started, e.g. the time to first
+ * frame and the time until all clocks are displayed. Each stage is logged to standard out as it completes, so
+ * startup can be tracked across machines.
+ */
+public class StartupMetrics {
+    public static final String FONTS = "fonts";
+    public static final String LOCATIONS = "locations";
+    public static final String TEMPLATES = "templates";
+    public static final String WEATHER = "weather-cache";
+    public static final String FIRST_FRAME = "time-to-first-frame";
+    public static final String ALL_CLOCKS = "time-to-all-clocks";
+    public static final String MAP = "map";
+
+    private static final StartupMetrics INSTANCE = new StartupMetrics();
+
+    private final long startMillis = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli)
+            .orElseGet(System::currentTimeMillis);
+    private final Map<String, Long> stageMillis = new LinkedHashMap<>();
+    private final CompletableFuture<Void> firstFrame = new CompletableFuture<>();
+
+    public static StartupMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a completed stage.
+     * @param stage name of the stage.
+     * @return milliseconds elapsed since the process started.
+     */
+    public synchronized long mark(String stage) {
+        long elapsed = System.currentTimeMillis() - startMillis;
+        stageMillis.put(stage, elapsed);
+        System.out.println("Startup %s: %d ms".formatted(stage, elapsed));
+        return elapsed;
+    }
+
+    /**
+     * Records the first frame showing clocks and runs the work deferred until then.
+     */
+    public void firstFrameShown() {
+        mark(FIRST_FRAME);
+        firstFrame.complete(null);
+    }
+
+    /**
+     * Defers work not needed for the first frame (e.g. fetching the weather). Runs right away once the first
+     * frame was shown.
+     * @param runnable work to run after the first frame.
+     */
+    public void afterFirstFrame(Runnable runnable) {
+        firstFrame.thenRun(runnable);
+    }
+
+    /**
+     * @param stage name of the stage.
+     * @return milliseconds from the process start until the stage completed or -1 when not completed yet.
+     */
+    public synchronized long getStageMillis(String stage) {
+        return stageMillis.getOrDefault(stage, -1L);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StartupMetrics" + stageMillis;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One application wide tick engine driving every clock. Each tick reads the wall clock once
+ * and fans the same instant out to the registered clocks in a single pass on the JavaFX
+ * application thread, instead of each clock owning its own Timeline.
+ *
+ * In {@link TickMode#MINUTES} mode each clock tells the engine when it next needs to be woken
+ * (e.g. the next minute boundary in its zone) and the engine sleeps until the earliest one.
+ * In {@link TickMode#SECONDS} mode every clock is ticked once a second.
+ *
+ * The engine also wakes at the next zone transition (e.g. daylight saving time change) known to the
+ * {@link ZoneTransitionIndex} and ticks only the clocks of the zones that transitioned.
+ *
+ * Clocks not visible (e.g. scrolled out of view) can be suspended and the whole engine can be paused
+ * (e.g. the window is minimized). Resuming catches the clocks up to the current instant in one tick.
+ */
+public class TickEngine {
+
+    /**
+     * Anything wanting to be told the current time (e.g. a clock widget).
+     */
+    @FunctionalInterface
+    public interface Tickable {
+        /**
+         * @param epochMillis the current time shared by all clocks of this tick.
+         * @return the epoch millis at which this tickable wants to be woken next.
+         */
+        long tick(long epochMillis);
+
+        /**
+         * @return the zone of this tickable to be woken when the zone transitions, or null if none.
+         */
+        default ZoneId getZoneId() {
+            return null;
+        }
+    }
+
+    public enum TickMode {
+        SECONDS,
+        MINUTES
+    }
+
+    /** Upper bound of a sleep so a wall clock adjustment is noticed in a timely manner. */
+    private static final long MAX_SLEEP_MILLIS = 60_000;
+
+    private static final TickEngine INSTANCE = new TickEngine();
+
+    private Tickable[] tickables = new Tickable[16];
+    private long[] wakeTimes = new long[16];
+    private ZoneId[] zoneIds = new ZoneId[16];
+    private boolean[] suspended = new boolean[16];
+    private int size;
+    // slot of each registered tickable
+    private final Map<Tickable, Integer> indexes = new IdentityHashMap<>();
+    private boolean paused;
+
+    private final ZoneTransitionIndex transitionIndex = ZoneTransitionIndex.getInstance();
+    private final Set<ZoneId> transitionedZones = new HashSet<>();
+
+    private TickMode tickMode = TickMode.MINUTES;
+    private PauseTransition sleep;
+    private boolean schedulePending;
+    private long lastTickMillis;
+
+    private long tickCount;
+    private long lastFanOutNanos;
+    private long totalFanOutNanos;
+
+    public static TickEngine getInstance() {
+        return INSTANCE;
+    }
+
+    public TickMode getTickMode() {
+        return tickMode;
+    }
+
+    public void setTickMode(TickMode tickMode) {
+        this.tickMode = tickMode;
+        if (sleep != null) {
+            schedule(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Adds a clock to the engine. The clock is ticked right away so it doesn't show stale
+     * values until the next tick.
+     * @param tickable clock to be updated.
+     */
+    public void register(Tickable tickable) {
+        if (indexOf(tickable) > -1) {
+            return;
+        }
+        if (size == tickables.length) {
+            tickables = Arrays.copyOf(tickables, size * 2);
+            wakeTimes = Arrays.copyOf(wakeTimes, size * 2);
+            zoneIds = Arrays.copyOf(zoneIds, size * 2);
+            suspended = Arrays.copyOf(suspended, size * 2);
+        }
+        long now = System.currentTimeMillis();
+        tickables[size] = tickable;
+        zoneIds[size] = tickable.getZoneId();
+        suspended[size] = false;
+        wakeTimes[size] = tickable.tick(now);
+        indexes.put(tickable, size);
+        size++;
+        requestSchedule();
+    }
+
+    /**
+     * Removes a clock from the engine. When no clocks are left the engine stops ticking.
+     * The last clock takes the freed slot as the order of ticking doesn't matter.
+     * @param tickable clock to no longer be updated.
+     */
+    public void unregister(Tickable tickable) {
+        Integer i = indexes.remove(tickable);
+        if (i != null) {
+            int last = --size;
+            if (i != last) {
+                tickables[i] = tickables[last];
+                wakeTimes[i] = wakeTimes[last];
+                zoneIds[i] = zoneIds[last];
+                suspended[i] = suspended[last];
+                indexes.put(tickables[i], i);
+            }
+            zoneIds[last] = null;
+            tickables[last] = null;
+        }
+        if (size == 0 && sleep != null) {
+            sleep.stop();
+        }
+    }
+
+    /**
+     * Suspends or resumes the updates of a clock (e.g. scrolled out of or into view). A resumed clock is
+     * caught up to the current instant right away.
+     * @param tickable a registered clock.
+     * @param suspend true to suspend, false to resume.
+     */
+    public void setSuspended(Tickable tickable, boolean suspend) {
+        int i = indexOf(tickable);
+        if (i < 0 || suspended[i] == suspend) {
+            return;
+        }
+        suspended[i] = suspend;
+        if (!suspend && !paused) {
+            long now = System.currentTimeMillis();
+            wakeTimes[i] = tickable.tick(now);
+            requestSchedule();
+        }
+    }
+
+    public boolean isSuspended(Tickable tickable) {
+        int i = indexOf(tickable);
+        return i > -1 && suspended[i];
+    }
+
+    /**
+     * Pauses or resumes all clocks (e.g. the window is minimized). Resuming catches every clock not
+     * suspended up to the current instant in one tick.
+     * @param pause true to pause, false to resume.
+     */
+    public void setPaused(boolean pause) {
+        if (paused == pause) {
+            return;
+        }
+        paused = pause;
+        if (paused) {
+            if (sleep != null) {
+                sleep.stop();
+            }
+        } else {
+            // wake everyone due now
+            Arrays.fill(wakeTimes, 0, size, Long.MIN_VALUE);
+            fanOut();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    private int indexOf(Tickable tickable) {
+        Integer i = indexes.get(tickable);
+        return i != null ? i : -1;
+    }
+
+    /**
+     * Many clocks registered or resumed together (e.g. loading the locations or scrolling) find the earliest
+     * wake time once instead of once per clock.
+     */
+    private void requestSchedule() {
+        if (!schedulePending) {
+            schedulePending = true;
+            Platform.runLater(() -> {
+                schedulePending = false;
+                schedule(System.currentTimeMillis());
+            });
+        }
+    }
+
+    /**
+     * Sleeps until the next second boundary (seconds mode) or the earliest wake time requested
+     * by the clocks (minutes mode), but no later than the next zone transition.
+     */
+    private void schedule(long now) {
+        if (size == 0 || paused) {
+            return;
+        }
+        long wakeAt = now + 1000 - now % 1000;
+        if (tickMode == TickMode.MINUTES) {
+            wakeAt = Long.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                if (!suspended[i]) {
+                    wakeAt = Math.min(wakeAt, wakeTimes[i]);
+                }
+            }
+        }
+        wakeAt = Math.min(wakeAt, transitionIndex.getNextTransitionMillis());
+        long delay = Math.max(1, Math.min(wakeAt - now, MAX_SLEEP_MILLIS));
+        if (sleep == null) {
+            sleep = new PauseTransition();
+            sleep.setOnFinished(actionEvent -> fanOut());
+        }
+        sleep.stop();
+        sleep.setDuration(Duration.millis(delay));
+        sleep.play();
+    }
+
+    /**
+     * Reads the wall clock once and hands the same instant to every clock due for an update or
+     * whose zone just transitioned.
+     */
+    private void fanOut() {
+        long begin = System.nanoTime();
+        long now = System.currentTimeMillis();
+        // wake everyone in seconds mode or when the wall clock was set back.
+        boolean all = tickMode == TickMode.SECONDS || now < lastTickMillis;
+        transitionedZones.clear();
+        transitionIndex.advance(now, transitionedZones);
+        boolean transitioned = !transitionedZones.isEmpty();
+        for (int i = 0; i < size; i++) {
+            if (suspended[i]) {
+                continue;
+            }
+            if (all || wakeTimes[i] <= now || (transitioned && transitionedZones.contains(zoneIds[i]))) {
+                wakeTimes[i] = tickables[i].tick(now);
+            }
+        }
+        lastTickMillis = now;
+        lastFanOutNanos = System.nanoTime() - begin;
+        totalFanOutNanos += lastFanOutNanos;
+        tickCount++;
+        schedule(now);
+    }
+
+    public int getRegisteredCount() {
+        return size;
+    }
+
+    public int getSuspendedCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (suspended[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * @return nanoseconds spent updating clocks during the last tick.
+     */
+    public long getLastFanOutNanos() {
+        return lastFanOutNanos;
+    }
+
+    /**
+     * @return average nanoseconds spent updating clocks per tick.
+     */
+    public long getAverageFanOutNanos() {
+        return tickCount == 0 ? 0 : totalFanOutNanos / tickCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TickEngine{" +
+                "mode=" + tickMode +
+                ", clocks=" + size +
+                ", suspended=" + getSuspendedCount() +
+                ", paused=" + paused +
+                ", ticks=" + tickCount +
+                ", lastFanOutNanos=" + lastFanOutNanos +
+                ", avgFanOutNanos=" + getAverageFanOutNanos() +
+                '}';
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * A local http server the map's tiles are routed through (http://127.0.0.1:port/tiles/{layer}/{z}/{x}/{y}).
+ * Tiles are stored on disk (~/worldclock/tiles) within a size budget evicting the least recently used tiles.
+ * The most recently used tiles are also kept in memory. Cached tiles are served without going to the network,
+ * so the map still shows the visited areas when offline. Concurrent requests of a tile not cached share one fetch.
+ */
+public class TileCache {
+    // disk budget in megabytes
+    private static final long DISK_BUDGET_BYTES = Long.getLong("worldclock.tileCacheMb", 200) * 1024 * 1024;
+    private static final long MEMORY_BUDGET_BYTES = 16 * 1024 * 1024;
+    private static final int SERVER_THREADS = 4;
+
+    /** upstream tile urls of the map's base layers by layer name, formatted with z, x, y. */
+    static final Map<String, String> TILE_SOURCES = Map.of(
+            "osm", "https://api.mapbox.com/styles/v1/mapbox/streets-v11/tiles/%1$d/%2$d/%3$d?access_token=pk.eyJ1IjoibWFwYm94IiwiYSI6ImNpejY4NXVycTA2emYycXBndHRqcmZ3N3gifQ.rJcFIG214AriISLbB6B5aw",
+            "satellite", "https://server.arcgisonline.com/ArcGIS/rest/services/World_Imagery/MapServer/tile/%1$d/%3$d/%2$d");
+
+    private static final TileCache INSTANCE = new TileCache(LocationStore.appDirectory().resolve("tiles"),
+            TILE_SOURCES, DISK_BUDGET_BYTES, MEMORY_BUDGET_BYTES);
+
+    private final Path directory;
+    private final Map<String, String> tileSources;
+    private final long diskBudgetBytes;
+    private final long memoryBudgetBytes;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    // tile sizes on disk by tile key (e.g. osm/3/4/2) in least recently used order
+    private final LinkedHashMap<String, Long> diskTiles = new LinkedHashMap<>(256, 0.75f, true);
+    private long diskBytes;
+    // hot set of tiles in least recently used order
+    private final LinkedHashMap<String, byte[]> memoryTiles = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+    // fetches of tiles not cached yet by tile key
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private long memoryHits;
+    private long diskHits;
+    private long misses;
+    private long coalesced;
+    private long evictions;
+
+    private HttpServer server;
+    private String baseUrl;
+
+    public static TileCache getInstance() {
+        return INSTANCE;
+    }
+
+    TileCache(Path directory, Map<String, String> tileSources, long diskBudgetBytes, long memoryBudgetBytes) {
+        this.directory = directory;
+        this.tileSources = tileSources;
+        this.diskBudgetBytes = diskBudgetBytes;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * Starts the server on a free port of the loopback address once. The tiles on disk are indexed in the
+     * background.
+     * @return the url the map requests its tiles from (e.g. http://127.0.0.1:50123/tiles), null when the
+     * server couldn't be started so the map uses the upstream urls.
+     */
+    public synchronized String start() {
+        if (baseUrl != null) {
+            return baseUrl;
+        }
+        try {
+            ExecutorService executor = Executors.newFixedThreadPool(SERVER_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "worldclock-tiles");
+                thread.setDaemon(true);
+                return thread;
+            });
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/tiles/", this::handle);
+            server.setExecutor(executor);
+            server.start();
+            baseUrl = "http://127.0.0.1:%d/tiles".formatted(server.getAddress().getPort());
+            executor.execute(this::indexDisk);
+            System.out.println("Tile cache " + baseUrl + " storing " + directory);
+            return baseUrl;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+            baseUrl = null;
+        }
+    }
+
+    /**
+     * Serves GET /tiles/{layer}/{z}/{x}/{y}.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String[] parts = exchange.getRequestURI().getPath().substring("/tiles/".length()).split("/");
+            String key = tileKey(parts);
+            if (key == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] tile = getTile(key);
+            if (tile == null) {
+                exchange.sendResponseHeaders(502, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType(tile));
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=86400");
+            exchange.sendResponseHeaders(200, tile.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(tile);
+            }
+        }
+    }
+
+    /**
+     * @param parts layer, z, x and y of the request path.
+     * @return a key such as osm/3/4/2 or null when the layer is unknown or the coordinate isn't numeric.
+     */
+    private String tileKey(String[] parts) {
+        if (parts.length != 4 || !tileSources.containsKey(parts[0])) {
+            return null;
+        }
+        try {
+            return "%s/%d/%d/%d".formatted(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks the tile up in memory, on disk and finally fetches it from its upstream server. A tile being fetched
+     * for another request is waited for instead.
+     * @param key tile key such as osm/3/4/2
+     * @return the image bytes or null when not cached and the upstream server can't be reached.
+     */
+    byte[] getTile(String key) {
+        byte[] tile;
+        boolean onDisk;
+        Path file = directory.resolve(key);
+        synchronized (this) {
+            tile = memoryTiles.get(key);
+            onDisk = diskTiles.get(key) != null;
+            if (tile != null) {
+                memoryHits++;
+            }
+        }
+        if (tile != null) {
+            if (onDisk) {
+                // the last use of a tile on disk orders the tiles indexed by the next run
+                touch(file);
+            }
+            return tile;
+        }
+        try {
+            tile = Files.readAllBytes(file);
+            touch(file);
+            synchronized (this) {
+                diskHits++;
+                if (diskTiles.putIfAbsent(key, (long) tile.length) == null) {
+                    // read before the disk was indexed
+                    diskBytes += tile.length;
+                }
+                putMemory(key, tile);
+            }
+            return tile;
+        } catch (NoSuchFileException e) {
+            // not cached
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        boolean[] created = new boolean[1];
+        CompletableFuture<byte[]> fetching = inFlight.computeIfAbsent(key, k -> {
+            created[0] = true;
+            return new CompletableFuture<>();
+        });
+        if (!created[0]) {
+            synchronized (this) {
+                coalesced++;
+            }
+            return fetching.join();
+        }
+        try {
+            synchronized (this) {
+                // fetched by a request finishing meanwhile
+                tile = memoryTiles.get(key);
+            }
+            if (tile == null) {
+                tile = fetch(key);
+                if (tile != null) {
+                    synchronized (this) {
+                        misses++;
+                        putMemory(key, tile);
+                    }
+                    putDisk(key, file, tile);
+                }
+            }
+        } finally {
+            inFlight.remove(key, fetching);
+            fetching.complete(tile);
+        }
+        return tile;
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // evicted meanwhile
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private byte[] fetch(String key) {
+        String[] parts = key.split("/");
+        String uri = tileSources.get(parts[0]).formatted(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                Integer.parseInt(parts[3]));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .timeout(Duration.ofSeconds(10))
+                .build();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() == 200) {
+                return response.body();
+            }
+            System.out.println("Tile " + key + " responded with " + response.statusCode());
+        } catch (IOException e) {
+            System.out.println("Tile " + key + " not fetched: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private void putMemory(String key, byte[] tile) {
+        if (memoryTiles.put(key, tile) == null) {
+            memoryBytes += tile.length;
+        }
+        Iterator<byte[]> eldest = memoryTiles.values().iterator();
+        while (memoryBytes > memoryBudgetBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Writes the tile (to a temporary file moved in place so a crash never leaves half a tile) and evicts
+     * the least recently used tiles exceeding the disk budget.
+     */
+    private void putDisk(String key, Path file, byte[] tile) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "tile", ".tmp");
+            Files.write(temp, tile);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        synchronized (this) {
+            Long previous = diskTiles.put(key, (long) tile.length);
+            diskBytes += tile.length - (previous != null ? previous : 0);
+        }
+        evictDisk();
+    }
+
+    /**
+     * Indexes the tiles on disk of a previous run by their last use (last modified time) and applies the
+     * disk budget.
+     */
+    void indexDisk() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        record DiskTile(String key, long size, long lastUsed) {}
+        List<DiskTile> found = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.forEach(file -> {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    String key = directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                    if (attributes.isRegularFile() && key.endsWith(".tmp")) {
+                        // left by a crash while writing
+                        Files.deleteIfExists(file);
+                    } else if (attributes.isRegularFile()) {
+                        found.add(new DiskTile(key, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                } catch (IOException e) {
+                    // deleted meanwhile
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+            return;
+        }
+        found.sort(Comparator.comparingLong(DiskTile::lastUsed));
+        synchronized (this) {
+            // tiles used while indexing stay the most recently used
+            LinkedHashMap<String, Long> usedTiles = new LinkedHashMap<>(diskTiles);
+            diskTiles.clear();
+            diskBytes = 0;
+            for (DiskTile diskTile : found) {
+                diskTiles.put(diskTile.key(), diskTile.size());
+                diskBytes += diskTile.size();
+            }
+            usedTiles.forEach((key, size) -> {
+                Long previous = diskTiles.put(key, size);
+                diskBytes += size - (previous != null ? previous : 0);
+            });
+        }
+        // applies the budget
+        evictDisk();
+    }
+
+    /**
+     * Deletes the least recently used tiles until the disk budget is met.
+     */
+    private void evictDisk() {
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> eldest = diskTiles.entrySet().iterator();
+            while (diskBytes > diskBudgetBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                diskBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+                evictions++;
+            }
+        }
+        for (String key : evicted) {
+            try {
+                Files.deleteIfExists(directory.resolve(key));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static String contentType(byte[] tile) {
+        if (tile.length > 1 && (tile[0] & 0xff) == 0xff && (tile[1] & 0xff) == 0xd8) {
+            return "image/jpeg";
+        }
+        return "image/png";
+    }
+
+    public synchronized long getMemoryHits() {
+        return memoryHits;
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * @return number of tiles fetched from their upstream server.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of requests which waited for a fetch of the same tile.
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TileCache{" +
+                "memoryHits=" + memoryHits +
+                ", diskHits=" + diskHits +
+                ", misses=" + misses +
+                ", coalesced=" + coalesced +
+                ", evictions=" + evictions +
+                ", diskTiles=" + diskTiles.size() +
+                ", diskBytes=" + diskBytes +
+                ", memoryTiles=" + memoryTiles.size() +
+                ", memoryBytes=" + memoryBytes +
+                '}';
+    }
+}
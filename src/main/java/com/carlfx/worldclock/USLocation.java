@@ -35,6 +35,18 @@ public class USLocation extends Location {
         super(timezone, city, "US", temp, tempType);
         setState(stateCode);
     }
+
+    protected USLocation(USLocation other) {
+        super(other);
+        this.state = other.state;
+        this.zip = other.zip;
+    }
+
+    @Override
+    public USLocation copy() {
+        return new USLocation(this);
+    }
+
     @Override
     public String getFullLocationName() {
         return getCity() + ", " + getState() + " " + getCountryCode();
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * The latest weather by geohash cell (about 5 x 5 km), so nearby locations share their weather. A report older
+ * than the TTL is stale: it's still shown while being refreshed. The cache is written to ~/worldclock/weather.json
+ * shortly after changes and read at startup so the last known weather shows right away.
+ */
+public class WeatherCache {
+    static final int GEOHASH_PRECISION = 5;
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    // reports older than this are dropped from the file
+    private static final Duration MAX_AGE = Duration.ofDays(1);
+    private static final Duration SAVE_DELAY = Duration.ofSeconds(5);
+
+    /**
+     * A report and when it was fetched.
+     */
+    public record CachedWeather(WeatherReport report, long fetchedMillis) {}
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path file;
+    private final long ttlMillis;
+    private final Map<String, CachedWeather> reports = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "worldclock-weather-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> pendingSave;
+
+    /**
+     * @param file JSON file of the reports by geohash.
+     * @param ttl age after which a report is stale.
+     */
+    WeatherCache(Path file, Duration ttl) {
+        this.file = file;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    /**
+     * Encodes a coordinate as geohash (e.g. gcpvj for London at 5 characters).
+     */
+    static String geohash(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90, minLon = -180, maxLon = 180;
+        StringBuilder geohash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int index = 0;
+        while (geohash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    index = index * 2 + 1;
+                    minLon = mid;
+                } else {
+                    index = index * 2;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    index = index * 2 + 1;
+                    minLat = mid;
+                } else {
+                    index = index * 2;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                geohash.append(BASE32.charAt(index));
+                bit = 0;
+                index = 0;
+            }
+        }
+        return geohash.toString();
+    }
+
+    /**
+     * @return the geohash cell of the location or null when it has no coordinates.
+     */
+    static String cellOf(Location location) {
+        if (location.getLatLong() == null || (location.getLongitude() == 0f) && location.getLatitude() == 0f) {
+            return null;
+        }
+        return geohash(location.getLatitude(), location.getLongitude(), GEOHASH_PRECISION);
+    }
+
+    /**
+     * @return the latest report of the cell, stale or not, or null.
+     */
+    public CachedWeather get(String cell) {
+        return reports.get(cell);
+    }
+
+    public boolean isStale(CachedWeather cachedWeather) {
+        return System.currentTimeMillis() - cachedWeather.fetchedMillis() >= ttlMillis;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void put(String cell, WeatherReport weatherReport) {
+        reports.put(cell, new CachedWeather(weatherReport, System.currentTimeMillis()));
+        requestSave();
+    }
+
+    /**
+     * Reads the reports of a previous run.
+     */
+    void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            Map<String, CachedWeather> stored = objectMapper.readValue(file.toFile(), new TypeReference<Map<String, CachedWeather>>() {});
+            long oldest = System.currentTimeMillis() - MAX_AGE.toMillis();
+            stored.forEach((cell, cachedWeather) -> {
+                if (cachedWeather.fetchedMillis() > oldest) {
+                    reports.putIfAbsent(cell, cachedWeather);
+                }
+            });
+        } catch (IOException e) {
+            // a corrupt cache is rebuilt
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Saves the changes of the next few seconds at once.
+     */
+    private synchronized void requestSave() {
+        if (pendingSave == null || pendingSave.isDone()) {
+            pendingSave = saver.schedule(this::save, SAVE_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the reports younger than a day to a temporary file moved in place.
+     */
+    void save() {
+        long oldest = System.currentTimeMillis() - MAX_AGE.toMillis();
+        reports.values().removeIf(cachedWeather -> cachedWeather.fetchedMillis() <= oldest);
+        Path temp = null;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            temp = Files.createTempFile(file.toAbsolutePath().getParent(), "weather", ".tmp");
+            objectMapper.writeValue(temp.toFile(), reports);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // nothing more to clean up
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WeatherCache{" +
+                "cells=" + reports.size() +
+                ", ttlMillis=" + ttlMillis +
+                ", file=" + file +
+                '}';
+    }
+}
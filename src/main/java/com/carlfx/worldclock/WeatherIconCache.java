@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * The weather icons (e.g. 04n for broken clouds at night) decoded once and shared by all clocks. An icon missing
+ * in memory is read from ~/worldclock/icons or else downloaded from openweathermap.org and stored there. When it
+ * can't be downloaded a bundled icon is shown instead (e.g. 04n2x.png) and the download is retried on the next
+ * request.
+ */
+public class WeatherIconCache {
+    private static final String ICON_URL = "https://openweathermap.org/img/wn/%s@2x.png";
+    private static final String FALLBACK_ICON = "04n";
+
+    private static final WeatherIconCache INSTANCE = new WeatherIconCache(ICON_URL,
+            LocationStore.appDirectory().resolve("icons"));
+
+    private final String iconUrl;
+    private final Path directory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "worldclock-icons");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(executor)
+            .connectTimeout(Duration.ofSeconds(3))
+            .build();
+
+    // icons by code, loading or loaded
+    private final Map<String, CompletableFuture<Image>> icons = new ConcurrentHashMap<>();
+
+    private long hits;
+    private long misses;
+    private long diskLoads;
+    private long downloads;
+    private long fallbacks;
+
+    public static WeatherIconCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param iconUrl url formatted with the icon code.
+     * @param directory where the downloaded icons are stored.
+     */
+    WeatherIconCache(String iconUrl, Path directory) {
+        this.iconUrl = iconUrl;
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the shared image of an icon. Concurrent requests of an icon being loaded share the load.
+     * @param icon weather icon code such as 04n, null when the weather had none.
+     * @return the image, completed on the JavaFX application thread unless already in memory.
+     */
+    public CompletableFuture<Image> get(String icon) {
+        if (icon == null) {
+            icon = FALLBACK_ICON;
+        }
+        CompletableFuture<Image> image = icons.get(icon);
+        if (image != null) {
+            count(true);
+            return image;
+        }
+        boolean[] created = new boolean[1];
+        image = icons.computeIfAbsent(icon, code -> {
+            created[0] = true;
+            return new CompletableFuture<>();
+        });
+        count(!created[0]);
+        if (created[0]) {
+            load(icon, image);
+        }
+        return image;
+    }
+
+    private synchronized void count(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    private void load(String icon, CompletableFuture<Image> image) {
+        Path file = directory.resolve(icon + "@2x.png");
+        CompletableFuture.supplyAsync(() -> {
+                    try {
+                        byte[] bytes = Files.readAllBytes(file);
+                        synchronized (this) {
+                            diskLoads++;
+                        }
+                        return bytes;
+                    } catch (NoSuchFileException e) {
+                        return null;
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor)
+                .thenCompose(bytes -> bytes != null ? CompletableFuture.completedFuture(bytes) : download(icon, file))
+                .thenApply(bytes -> {
+                    Image decoded = new Image(new ByteArrayInputStream(bytes));
+                    if (decoded.isError()) {
+                        throw new CompletionException(decoded.getException());
+                    }
+                    return decoded;
+                })
+                .whenComplete((decoded, err) -> {
+                    if (err != null) {
+                        System.out.println("Weather icon " + icon + " not loaded: " + err.getMessage());
+                        // retried on the next request
+                        icons.remove(icon, image);
+                        decoded = fallback(icon);
+                    }
+                    Image result = decoded;
+                    Platform.runLater(() -> image.complete(result));
+                });
+    }
+
+    /**
+     * Downloads the icon and stores it to a temporary file moved in place.
+     */
+    private CompletableFuture<byte[]> download(String icon, Path file) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(iconUrl.formatted(icon)))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(new IOException("Weather icon responded with " + response.statusCode()));
+                    }
+                    synchronized (this) {
+                        downloads++;
+                    }
+                    try {
+                        Files.createDirectories(directory);
+                        Path temp = Files.createTempFile(directory, icon, ".tmp");
+                        Files.write(temp, response.body());
+                        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException e) {
+                        // shown anyway
+                        e.printStackTrace();
+                    }
+                    return response.body();
+                });
+    }
+
+    /**
+     * @return the bundled icon (e.g. 04n2x.png) or the bundled broken clouds icon when not bundled.
+     */
+    private Image fallback(String icon) {
+        synchronized (this) {
+            fallbacks++;
+        }
+        InputStream in = WeatherIconCache.class.getResourceAsStream(icon + "2x.png");
+        if (in == null) {
+            in = WeatherIconCache.class.getResourceAsStream(FALLBACK_ICON + "2x.png");
+        }
+        try (InputStream bundled = in) {
+            return new Image(bundled);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "WeatherIconCache{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", diskLoads=" + diskLoads +
+                ", downloads=" + downloads +
+                ", fallbacks=" + fallbacks +
+                ", icons=" + icons.size() +
+                '}';
+    }
+}
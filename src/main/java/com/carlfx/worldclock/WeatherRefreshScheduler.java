@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Decides when the weather of each location is refreshed. Each refresh is due about one interval after the
+ * previous one, jittered by +/- 25% so locations added together spread across the interval instead of
+ * refreshing in the same second. Due refreshes are sent through a token bucket limiting the outbound rate,
+ * and a failed refresh is retried with an exponential backoff.
+ */
+class WeatherRefreshScheduler {
+    private static final double JITTER = 0.25;
+    private static final Duration FIRST_RETRY = Duration.ofSeconds(30);
+
+    private final long intervalMillis;
+    private final double tokensPerMilli;
+    private final int burst;
+    private final Function<Location, CompletableFuture<?>> refresher;
+    private final ScheduledExecutorService executor;
+
+    // refreshes by due time
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingLong(entry -> entry.dueMillis));
+    // scheduled locations by location id
+    private final Map<String, Entry> entries = new HashMap<>();
+    private double tokens;
+    private long refillMillis;
+    private ScheduledFuture<?> wakeUp;
+    private long wakeUpMillis = Long.MAX_VALUE;
+
+    private static class Entry {
+        final Location location;
+        long dueMillis;
+        int failures;
+        boolean inFlight;
+        boolean removed;
+
+        Entry(Location location, long dueMillis) {
+            this.location = location;
+            this.dueMillis = dueMillis;
+        }
+    }
+
+    /**
+     * @param interval time between refreshes of a location.
+     * @param requestsPerSecond sustained rate of refreshes.
+     * @param burst refreshes sent at once before the rate applies.
+     * @param refresher refreshes the weather of a location, failing when it wasn't fetched.
+     */
+    WeatherRefreshScheduler(Duration interval, double requestsPerSecond, int burst,
+                            Function<Location, CompletableFuture<?>> refresher) {
+        this.intervalMillis = interval.toMillis();
+        this.tokensPerMilli = requestsPerSecond / 1000;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refillMillis = System.currentTimeMillis();
+        this.refresher = refresher;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "worldclock-weather-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules the refreshes of a location.
+     * @param refreshNow true to refresh as soon as a token is available, false to refresh after a jittered interval.
+     */
+    synchronized void add(Location location, boolean refreshNow) {
+        if (entries.containsKey(location.getId())) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(location, refreshNow ? now : now + jitteredInterval());
+        entries.put(location.getId(), entry);
+        queue.add(entry);
+        pump();
+    }
+
+    /**
+     * Stops refreshing a location. A refresh in flight completes without being scheduled again.
+     */
+    synchronized void remove(Location location) {
+        Entry entry = entries.remove(location.getId());
+        if (entry != null) {
+            // left in the queue until polled
+            entry.removed = true;
+        }
+    }
+
+    /**
+     * @return number of refreshes due but waiting for a token.
+     */
+    synchronized int getQueueDepth() {
+        long now = System.currentTimeMillis();
+        int depth = 0;
+        for (Entry entry : queue) {
+            if (!entry.removed && entry.dueMillis <= now) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * @return epoch millis of the location's next refresh, 0 when in flight or -1 when not scheduled.
+     */
+    synchronized long getNextRefreshMillis(Location location) {
+        Entry entry = entries.get(location.getId());
+        if (entry == null) {
+            return -1;
+        }
+        return entry.inFlight ? 0 : entry.dueMillis;
+    }
+
+    /**
+     * Sends the due refreshes as long as there are tokens, then sleeps until the next refresh is due or the
+     * next token is available.
+     */
+    private synchronized void pump() {
+        long now = System.currentTimeMillis();
+        if (wakeUpMillis <= now) {
+            // woken up
+            wakeUpMillis = Long.MAX_VALUE;
+        }
+        tokens = Math.min(burst, tokens + (now - refillMillis) * tokensPerMilli);
+        refillMillis = now;
+        while (!queue.isEmpty()) {
+            Entry entry = queue.peek();
+            if (entry.removed) {
+                queue.poll();
+            } else if (entry.dueMillis > now || tokens < 1) {
+                break;
+            } else {
+                queue.poll();
+                tokens--;
+                entry.inFlight = true;
+                refresher.apply(entry.location).whenComplete((result, err) -> refreshed(entry, err == null));
+            }
+        }
+        if (!queue.isEmpty()) {
+            long dueMillis = queue.peek().dueMillis;
+            long tokenMillis = now + (long) Math.ceil((1 - tokens) / tokensPerMilli);
+            wakeUpAt(Math.max(dueMillis, tokenMillis));
+        }
+    }
+
+    private synchronized void refreshed(Entry entry, boolean succeeded) {
+        entry.inFlight = false;
+        if (entry.removed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (succeeded) {
+            entry.failures = 0;
+            entry.dueMillis = now + jitteredInterval();
+        } else {
+            entry.failures++;
+            entry.dueMillis = now + backoff(entry.failures);
+        }
+        queue.add(entry);
+        wakeUpAt(entry.dueMillis);
+    }
+
+    /**
+     * Wakes up the pump at the given time unless it will wake up earlier anyway.
+     */
+    private void wakeUpAt(long epochMillis) {
+        if (wakeUpMillis <= epochMillis) {
+            return;
+        }
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+        }
+        wakeUpMillis = epochMillis;
+        wakeUp = executor.schedule(this::pump, Math.max(0, epochMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private long jitteredInterval() {
+        double jitter = 1 - JITTER + 2 * JITTER * ThreadLocalRandom.current().nextDouble();
+        return (long) (intervalMillis * jitter);
+    }
+
+    /**
+     * @return 30s, 60s, 120s... jittered and at most one interval.
+     */
+    private long backoff(int failures) {
+        long backoff = FIRST_RETRY.toMillis() << Math.min(failures - 1, 20);
+        double jitter = 1 - JITTER + 2 * JITTER * ThreadLocalRandom.current().nextDouble();
+        return (long) (Math.min(backoff, intervalMillis) * jitter);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The current weather of a location from openweathermap.org
+ * @param icon weather icon code such as 04n
+ * @param description weather description such as broken clouds
+ * @param temperature temperature in the units requested.
+ */
+public record WeatherReport(String icon, String description, float temperature) {
+    // thread safe and shared by all parsers
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Parses the JSON payload of the current weather (api.openweathermap.org/data/2.5/weather).
+     * @param dayForecastJson JSON payload
+     * @return weather report of weather[0].icon, weather[0].description and main.temp
+     * @throws JsonProcessingException when the payload isn't valid JSON or has no main.temp.
+     */
+    public static WeatherReport parse(String dayForecastJson) throws JsonProcessingException {
+        try (JsonParser parser = JSON_FACTORY.createParser(dayForecastJson)) {
+            return parse(parser);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // not reading from a stream
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses the JSON payload as received (UTF-8) without decoding it to a String first.
+     * @see #parse(String)
+     */
+    public static WeatherReport parse(byte[] dayForecastJson) throws JsonProcessingException {
+        try (JsonParser parser = JSON_FACTORY.createParser(dayForecastJson)) {
+            return parse(parser);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // not reading from a stream
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Streams through the payload reading only weather[0].icon, weather[0].description and main.temp. All other
+     * values are skipped without being materialized.
+     */
+    private static WeatherReport parse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+        String icon = null;
+        String description = "";
+        Double temperature = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("weather".equals(field) && token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+                if (token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String weatherField = parser.getCurrentName();
+                        parser.nextToken();
+                        if ("icon".equals(weatherField)) {
+                            icon = parser.getValueAsString();
+                        } else if ("description".equals(weatherField)) {
+                            description = parser.getValueAsString("");
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    token = parser.nextToken();
+                }
+                // skip the other weather conditions
+                while (token != JsonToken.END_ARRAY && token != null) {
+                    parser.skipChildren();
+                    token = parser.nextToken();
+                }
+            } else if ("main".equals(field) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String mainField = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("temp".equals(mainField)) {
+                        temperature = parser.getValueAsDouble();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (temperature == null) {
+            throw new JsonParseException(parser, "No main.temp in the weather");
+        }
+        return new WeatherReport(icon, description, temperature.floatValue());
+    }
+}
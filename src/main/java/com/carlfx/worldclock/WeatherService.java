@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Fetches the current weather from openweathermap.org for all clocks. One {@link HttpClient} with a bounded executor
+ * is shared by all requests, and concurrent requests for the same {@link WeatherCache} cell share one in-flight
+ * request. A cell fetched within half the TTL (e.g. for a nearby location) is served from the cache.
+ *
+ * Clocks subscribe to the weather of their location. The subscribed locations are refreshed about every
+ * {@link #REFRESH} by a {@link WeatherRefreshScheduler} at no more than {@link #REQUESTS_PER_SECOND}, and the
+ * reports delivered on the JavaFX application thread. A subscriber gets the cached report right away, even when
+ * stale, while a stale report is being refreshed.
+ */
+public class WeatherService {
+    // refresh interval which is also the time to live of a cached report
+    static final Duration REFRESH = Duration.ofMinutes(Long.getLong("worldclock.weatherTtlMinutes", 10));
+    private static final int THREADS = 4;
+    static final double REQUESTS_PER_SECOND = 1;
+    private static final int BURST = 10;
+    private static final String WEATHER_URL = "https://api.openweathermap.org/data/2.5/weather?units=metric&lat=%s&lon=%s&appid=%s";
+
+    private static final WeatherService INSTANCE = new WeatherService(WEATHER_URL, readAppId(),
+            new WeatherCache(LocationStore.appDirectory().resolve("weather.json"), REFRESH),
+            StartupMetrics.getInstance()::afterFirstFrame);
+
+    /**
+     * Stops the weather updates of a subscriber.
+     */
+    public interface Subscription {
+        void cancel();
+    }
+
+    private final String weatherUrl;
+    private final String appId;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final WeatherRefreshScheduler refreshScheduler;
+    private final Executor afterFirstFrame;
+
+    private final WeatherCache weatherCache;
+    // requests in flight by cell
+    private final Map<String, CompletableFuture<WeatherReport>> inFlight = new ConcurrentHashMap<>();
+    // subscribers by location id
+    private final Map<String, LocationSubscribers> subscriptions = new HashMap<>();
+
+    private long requestCount;
+    private long coalescedCount;
+    private long cacheHitCount;
+    private long failureCount;
+    private long totalLatencyMillis;
+    private long maxLatencyMillis;
+
+    /**
+     * The subscribers of one location. The coordinates are read on each refresh as a location is edited in place.
+     */
+    private static class LocationSubscribers {
+        final Location location;
+        final List<Consumer<WeatherReport>> subscribers = new CopyOnWriteArrayList<>();
+
+        LocationSubscribers(Location location) {
+            this.location = location;
+        }
+    }
+
+    public static WeatherService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param weatherUrl url formatted with the latitude, longitude and app id.
+     * @param appId the openweathermap.org API token or null when missing.
+     * @param weatherCache reports of previous runs are read right away.
+     * @param afterFirstFrame runs the first refresh of a location without a fresh report once the first frame
+     *                        was shown.
+     */
+    WeatherService(String weatherUrl, String appId, WeatherCache weatherCache, Executor afterFirstFrame) {
+        this.weatherUrl = weatherUrl;
+        this.appId = appId;
+        this.weatherCache = weatherCache;
+        this.afterFirstFrame = afterFirstFrame;
+        weatherCache.load();
+        this.executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "worldclock-weather");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(3))
+                .build();
+        this.refreshScheduler = new WeatherRefreshScheduler(REFRESH, REQUESTS_PER_SECOND, BURST, this::refresh);
+    }
+
+    private static String readAppId() {
+        try (InputStream in = WeatherService.class.getResourceAsStream("openweathermap-appid.txt")) {
+            if (in != null) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8).strip();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        System.out.println("Error. No API token (appid) set a file called openweathermap-appid.txt.");
+        return null;
+    }
+
+    /**
+     * @return the coordinates as requested (e.g. 51.507351,-0.127758) or null when the location has none.
+     */
+    static String coordinates(Location location) {
+        if (location.getLatLong() == null || (location.getLongitude() == 0f) && location.getLatitude() == 0f) {
+            return null;
+        }
+        return String.format(Locale.ROOT, "%.6f,%.6f", location.getLatitude(), location.getLongitude());
+    }
+
+    /**
+     * Requests the current weather. A request for the cell already in flight is joined instead, and a report of
+     * the cell younger than half the TTL is returned without a request.
+     * @param location Location containing the latitude and longitude.
+     * @return the weather, completed on a weather thread.
+     */
+    public CompletableFuture<WeatherReport> request(Location location) {
+        String coordinates = coordinates(location);
+        if (coordinates == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("No lat long defined"));
+        }
+        String cell = WeatherCache.cellOf(location);
+        WeatherCache.CachedWeather cachedWeather = weatherCache.get(cell);
+        if (cachedWeather != null && System.currentTimeMillis() - cachedWeather.fetchedMillis() < weatherCache.getTtlMillis() / 2) {
+            synchronized (this) {
+                cacheHitCount++;
+            }
+            return CompletableFuture.completedFuture(cachedWeather.report());
+        }
+        if (appId == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No API token (appid) set"));
+        }
+        boolean[] created = new boolean[1];
+        CompletableFuture<WeatherReport> request = inFlight.computeIfAbsent(cell, key -> {
+            created[0] = true;
+            return new CompletableFuture<>();
+        });
+        if (!created[0]) {
+            synchronized (this) {
+                coalescedCount++;
+            }
+            return request;
+        }
+        long startMillis = System.currentTimeMillis();
+        String[] latLon = coordinates.split(",");
+        HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create(weatherUrl.formatted(latLon[0], latLon[1], appId)))
+                .timeout(Duration.ofMillis(3000))
+                .build();
+        httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApplyAsync(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(new IOException("Weather responded with " + response.statusCode()));
+                    }
+                    try {
+                        return WeatherReport.parse(response.body());
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor)
+                .whenComplete((weatherReport, err) -> {
+                    inFlight.remove(cell, request);
+                    recordLatency(System.currentTimeMillis() - startMillis, err == null);
+                    if (err == null) {
+                        weatherCache.put(cell, weatherReport);
+                        request.complete(weatherReport);
+                    } else {
+                        request.completeExceptionally(err);
+                    }
+                });
+        return request;
+    }
+
+    /**
+     * Subscribes to the weather of a location. The cached weather of its cell is delivered right away. When
+     * missing or stale it's requested once the first frame of clocks was shown. The location is refreshed until
+     * its last subscriber cancelled.
+     * @param location location of a clock.
+     * @param subscriber called on the JavaFX application thread.
+     * @return to stop the updates.
+     */
+    public Subscription subscribe(Location location, Consumer<WeatherReport> subscriber) {
+        String cell = WeatherCache.cellOf(location);
+        WeatherCache.CachedWeather cachedWeather = cell != null ? weatherCache.get(cell) : null;
+        LocationSubscribers locationSubscribers;
+        synchronized (subscriptions) {
+            locationSubscribers = subscriptions.computeIfAbsent(location.getId(), id -> new LocationSubscribers(location));
+            locationSubscribers.subscribers.add(subscriber);
+        }
+        if (cachedWeather != null) {
+            subscriber.accept(cachedWeather.report());
+        }
+        if (cachedWeather != null && !weatherCache.isStale(cachedWeather)) {
+            refreshScheduler.add(location, false);
+        } else {
+            afterFirstFrame.execute(() -> {
+                synchronized (subscriptions) {
+                    if (subscriptions.get(location.getId()) == locationSubscribers) {
+                        refreshScheduler.add(location, true);
+                    }
+                }
+            });
+        }
+        return () -> {
+            synchronized (subscriptions) {
+                if (locationSubscribers.subscribers.remove(subscriber) && locationSubscribers.subscribers.isEmpty()
+                        && subscriptions.remove(location.getId(), locationSubscribers)) {
+                    refreshScheduler.remove(location);
+                }
+            }
+        };
+    }
+
+    /**
+     * Requests the weather of a location and delivers it to its subscribers.
+     * @return the request.
+     */
+    private CompletableFuture<WeatherReport> refresh(Location location) {
+        return request(location).whenComplete((weatherReport, err) -> {
+            if (err != null) {
+                System.out.println("Weather of " + location.getFullLocationName() + " not fetched: " + err.getMessage());
+                return;
+            }
+            Platform.runLater(() -> {
+                LocationSubscribers locationSubscribers;
+                synchronized (subscriptions) {
+                    locationSubscribers = subscriptions.get(location.getId());
+                }
+                if (locationSubscribers != null) {
+                    locationSubscribers.subscribers.forEach(subscriber -> subscriber.accept(weatherReport));
+                }
+            });
+        });
+    }
+
+    /**
+     * Writes the cached weather right away (e.g. on exit) instead of shortly after the last change.
+     */
+    public void saveCache() {
+        weatherCache.save();
+    }
+
+    private synchronized void recordLatency(long latencyMillis, boolean succeeded) {
+        requestCount++;
+        if (!succeeded) {
+            failureCount++;
+        }
+        totalLatencyMillis += latencyMillis;
+        maxLatencyMillis = Math.max(maxLatencyMillis, latencyMillis);
+    }
+
+    /**
+     * @return number of requests sent, not counting the ones joining a request in flight.
+     */
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return number of requests which joined a request in flight.
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return number of requests served by the cache.
+     */
+    public synchronized long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+
+    public synchronized double getAverageLatencyMillis() {
+        return requestCount == 0 ? 0 : (double) totalLatencyMillis / requestCount;
+    }
+
+    public synchronized long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    /**
+     * @return number of refreshes due but held back by the rate limit.
+     */
+    public int getQueueDepth() {
+        return refreshScheduler.getQueueDepth();
+    }
+
+    /**
+     * @return epoch millis of the location's next refresh, 0 when in flight or -1 when not subscribed.
+     */
+    public long getNextRefreshMillis(Location location) {
+        return refreshScheduler.getNextRefreshMillis(location);
+    }
+
+    @Override
+    public String toString() {
+        // not holding this lock as the scheduler calls into this service while holding its lock
+        int queueDepth = getQueueDepth();
+        synchronized (this) {
+            return "WeatherService{" +
+                    "requests=" + requestCount +
+                    ", coalesced=" + coalescedCount +
+                    ", cacheHits=" + cacheHitCount +
+                    ", failures=" + failureCount +
+                    ", avgLatencyMillis=" + "%.1f".formatted(getAverageLatencyMillis()) +
+                    ", maxLatencyMillis=" + maxLatencyMillis +
+                    ", queueDepth=" + queueDepth +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javafx.application.Platform;
+import javafx.concurrent.Worker;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.web.WebEngine;
+import javafx.scene.web.WebView;
+import netscape.javascript.JSObject;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The world map (index.html) with a pin per location below the clocks. Depending on the {@link Mode} the WebView
+ * is created right away, created when first needed or not at all. Map commands issued before the map finished
+ * loading are queued and replayed once it's ready.
+ *
+ * The map clusters nearby pins and only shows the pins inside its viewport. Marker changes are coalesced by a
+ * {@link MarkerSync} into the minimal diff against what the map shows, sent in one call as JSON. Editing a
+ * location's coordinate moves its pin instead of rebuilding it.
+ */
+public class WorldMap {
+
+    public enum Mode {
+        /** the map is created at startup */
+        EAGER,
+        /** a placeholder until the map is expanded or a clock is double clicked */
+        LAZY,
+        /** no map, WebKit is never started */
+        NONE
+    }
+
+    // number of random markers to measure the frame times of a flyTo with, none when 0
+    private static final int BENCHMARK_MARKERS = Integer.getInteger("worldclock.mapBenchmark", 0);
+
+    private final Mode mode;
+    private final StackPane container = new StackPane();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final MarkerSync markerSync = new MarkerSync();
+    private boolean flushPending;
+    private String pendingViewLocation;
+    private WebView webView;
+    private JSObject window;
+
+    public WorldMap(Mode mode) {
+        this.mode = mode;
+        container.getStyleClass().add("world-map");
+        if (mode == Mode.LAZY) {
+            Label placeholder = new Label("Show map");
+            placeholder.getStyleClass().add("map-placeholder");
+            placeholder.setOnMouseClicked(mouseEvent -> expand());
+            container.getChildren().add(placeholder);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Attaches the map below the clocks, an eager map is created now.
+     * @return the node below the clocks or null when there's no map.
+     */
+    public Region attach() {
+        if (mode == Mode.EAGER) {
+            expand();
+        }
+        return mode == Mode.NONE ? null : container;
+    }
+
+    /**
+     * Creates the map replacing the placeholder. Does nothing when the map exists already or there's no map.
+     */
+    public void expand() {
+        if (webView != null || mode == Mode.NONE) {
+            return;
+        }
+        webView = createMap();
+        container.getChildren().setAll(webView);
+        if (container.getScene() != null) {
+            container.getScene().getWindow().sizeToScene();
+        }
+    }
+
+    public boolean isExpanded() {
+        return webView != null;
+    }
+
+    /**
+     * Adds a marker or updates the marker of the same location.
+     */
+    public void addMarker(Location location) {
+        if (mode == Mode.NONE) {
+            return;
+        }
+        markerSync.put(location);
+        requestFlush();
+    }
+
+    public void removeMarker(Location location) {
+        if (mode == Mode.NONE) {
+            return;
+        }
+        markerSync.remove(location);
+        requestFlush();
+    }
+
+    /**
+     * Flies to the location's pin. A lazy map is created first.
+     */
+    public void viewMapLocation(Location location) {
+        if (mode == Mode.NONE) {
+            return;
+        }
+        expand();
+        if (window == null) {
+            pendingViewLocation = location.getId();
+        } else {
+            flush();
+            window.call("viewMapLocation", location.getId());
+        }
+    }
+
+    /**
+     * Changes made while handling the same events are sent together.
+     */
+    private void requestFlush() {
+        if (!flushPending && window != null) {
+            flushPending = true;
+            Platform.runLater(this::flush);
+        }
+    }
+
+    /**
+     * Sends the marker diff to the map in one call. Until the map finished loading the changes stay queued.
+     */
+    private void flush() {
+        flushPending = false;
+        if (window == null || !markerSync.hasChanges()) {
+            return;
+        }
+        try {
+            String changes = MAPPER.writeValueAsString(markerSync.diff());
+            window.call("applyMarkerChanges", changes);
+        } catch (JsonProcessingException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A simple WebView containing a web page.
+     */
+    private WebView createMap() {
+        WebView webView = new WebView();
+        webView.setPrefWidth(310);
+        webView.setPrefHeight(310);
+        WebEngine engine = webView.getEngine();
+        // Allows Java code to talk to JavaScript code
+        engine.setJavaScriptEnabled(true);
+        engine.setOnAlert(webEvent -> {
+            System.out.println("WebKit Alert: " + webEvent.getData());
+        });
+
+        engine
+                .getLoadWorker()
+                .stateProperty().addListener((observable, oldValue, newValue) -> {
+                    if (newValue == Worker.State.SUCCEEDED) {
+                        System.out.println("index.html loaded successfully");
+                        window = (JSObject) engine.executeScript("window");
+                        // replay the commands issued while loading
+                        flush();
+                        if (pendingViewLocation != null) {
+                            window.call("viewMapLocation", pendingViewLocation);
+                            pendingViewLocation = null;
+                        }
+                        StartupMetrics.getInstance().mark(StartupMetrics.MAP);
+                        if (BENCHMARK_MARKERS > 0) {
+                            // the frame times are reported by an alert
+                            window.call("benchmarkFlyTo", BENCHMARK_MARKERS);
+                        }
+                    } else {
+                        System.out.println("WebEngine state " + newValue);
+                    }
+                }
+        );
+
+        // the tiles are routed through the local tile cache
+        String page = WorldMap.class.getResource("index.html").toExternalForm();
+        String tileCacheUrl = TileCache.getInstance().start();
+        if (tileCacheUrl != null) {
+            page += "#tiles=" + URLEncoder.encode(tileCacheUrl, StandardCharsets.UTF_8);
+        }
+        engine.load(page);
+        webView.requestFocus();
+
+        return webView;
+    }
+}
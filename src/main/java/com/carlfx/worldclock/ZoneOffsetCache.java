@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Caches a zone's offset between two {@link ZoneRules} transitions (e.g. daylight saving time changes).
+ * Asking for the offset of an instant within the cached span is a couple of field reads. Only when an
+ * instant falls outside of the span are the zone rules asked again. Safe to share between threads.
+ */
+public class ZoneOffsetCache {
+
+    /**
+     * Offset in effect from (inclusive) until (exclusive) the epoch millis.
+     */
+    private record Span(int offsetSeconds, long fromMillis, long untilMillis) {
+    }
+
+    private final ZoneId zoneId;
+    private final ZoneRules zoneRules;
+    private volatile Span span;
+
+    public ZoneOffsetCache(ZoneId zoneId) {
+        this.zoneId = zoneId;
+        this.zoneRules = zoneId.getRules();
+        this.span = spanOf(System.currentTimeMillis());
+    }
+
+    private Span spanOf(long epochMillis) {
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+        int offsetSeconds = zoneRules.getOffset(instant).getTotalSeconds();
+        if (zoneRules.isFixedOffset()) {
+            return new Span(offsetSeconds, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        // a nano later to include a transition happening exactly at the instant.
+        ZoneOffsetTransition previous = zoneRules.previousTransition(instant.plusNanos(1));
+        ZoneOffsetTransition next = zoneRules.nextTransition(instant);
+        return new Span(offsetSeconds,
+                previous == null ? Long.MIN_VALUE : previous.toEpochSecond() * 1000,
+                next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000);
+    }
+
+    /**
+     * @param epochMillis an instant.
+     * @return the zone's total offset from GMT in seconds at the instant.
+     */
+    public int offsetSeconds(long epochMillis) {
+        Span current = span;
+        if (epochMillis < current.fromMillis || epochMillis >= current.untilMillis) {
+            current = spanOf(epochMillis);
+            span = current;
+        }
+        return current.offsetSeconds;
+    }
+
+    /**
+     * @return epoch millis of the zone's next transition after the cached span or Long.MAX_VALUE if none.
+     */
+    public long getNextTransitionMillis() {
+        return span.untilMillis;
+    }
+
+    public ZoneId getZoneId() {
+        return zoneId;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One transition index shared by all locations. Locations in the same zone share one {@link ZoneOffsetCache}
+ * and the index knows the earliest upcoming transition (e.g. a daylight saving time change) of all zones in use.
+ * When that instant has passed {@link #advance(long, Collection)} refreshes only the zones that transitioned so
+ * the {@link TickEngine} can wake only the affected clocks.
+ */
+public class ZoneTransitionIndex {
+    private static final ZoneTransitionIndex INSTANCE = new ZoneTransitionIndex();
+
+    private final Map<ZoneId, ZoneOffsetCache> offsetCaches = new ConcurrentHashMap<>();
+    private volatile long nextTransitionMillis = Long.MAX_VALUE;
+
+    public static ZoneTransitionIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param zoneId a location's zone.
+     * @return the offset cache shared by all locations of the zone.
+     */
+    public ZoneOffsetCache offsetCache(ZoneId zoneId) {
+        ZoneOffsetCache offsetCache = offsetCaches.get(zoneId);
+        if (offsetCache == null) {
+            offsetCache = offsetCaches.computeIfAbsent(zoneId, ZoneOffsetCache::new);
+            updateNextTransition();
+        }
+        return offsetCache;
+    }
+
+    /**
+     * @return epoch millis of the earliest transition of any zone in use or Long.MAX_VALUE if none.
+     */
+    public long getNextTransitionMillis() {
+        return nextTransitionMillis;
+    }
+
+    /**
+     * Refreshes the offset of every zone whose transition is at or before the instant.
+     * @param epochMillis the current time.
+     * @param transitioned receives the zones whose offset got refreshed.
+     */
+    public void advance(long epochMillis, Collection<ZoneId> transitioned) {
+        if (epochMillis < nextTransitionMillis) {
+            return;
+        }
+        for (ZoneOffsetCache offsetCache : offsetCaches.values()) {
+            if (offsetCache.getNextTransitionMillis() <= epochMillis) {
+                offsetCache.offsetSeconds(epochMillis);
+                transitioned.add(offsetCache.getZoneId());
+            }
+        }
+        updateNextTransition();
+    }
+
+    private synchronized void updateNextTransition() {
+        long next = Long.MAX_VALUE;
+        for (ZoneOffsetCache offsetCache : offsetCaches.values()) {
+            next = Math.min(next, offsetCache.getNextTransitionMillis());
+        }
+        nextTransitionMillis = next;
+    }
+}
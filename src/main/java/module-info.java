@@ -23,6 +23,7 @@ module worldclock {
     requires javafx.fxml;
     requires javafx.web;
     requires jdk.jsobject;
+    requires jdk.httpserver;
     requires com.fasterxml.jackson.core;
     requires com.fasterxml.jackson.databind;
     requires com.fasterxml.jackson.annotation;
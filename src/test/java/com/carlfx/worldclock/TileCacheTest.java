@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the {@link TileCache} against a local stub tile server.
+ */
+class TileCacheTest {
+    private static final long DISK_BUDGET_BYTES = 200 * 1024 * 1024;
+    private static final long MEMORY_BUDGET_BYTES = 16 * 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private StubHttpServer tileServer;
+    private volatile int tileSize = 1000;
+    private Map<String, String> tileSources;
+
+    @BeforeEach
+    void startTileServer() throws IOException {
+        tileServer = new StubHttpServer(8, status -> status == 200 ? new byte[tileSize] : null);
+        tileSources = Map.of("osm", tileServer.getBaseUrl() + "/%1$d/%2$d/%3$d");
+    }
+
+    @AfterEach
+    void stopTileServer() {
+        tileServer.close();
+    }
+
+    private TileCache newTileCache(long diskBudgetBytes) {
+        return new TileCache(directory, tileSources, diskBudgetBytes, MEMORY_BUDGET_BYTES);
+    }
+
+    @Test
+    void missFetchesOnceThenServesFromMemory() {
+        TileCache tileCache = newTileCache(DISK_BUDGET_BYTES);
+
+        byte[] fetched = tileCache.getTile("osm/3/4/2");
+        byte[] cached = tileCache.getTile("osm/3/4/2");
+
+        assertEquals(1000, fetched.length);
+        assertSame(fetched, cached);
+        assertEquals(1, tileServer.getRequestCount("/3/4/2"));
+        assertEquals(1, tileCache.getMisses());
+        assertEquals(1, tileCache.getMemoryHits());
+        assertTrue(Files.exists(directory.resolve("osm/3/4/2")));
+    }
+
+    @Test
+    void diskHitAfterRestart() {
+        newTileCache(DISK_BUDGET_BYTES).getTile("osm/3/4/2");
+
+        TileCache restarted = newTileCache(DISK_BUDGET_BYTES);
+        restarted.indexDisk();
+        byte[] tile = restarted.getTile("osm/3/4/2");
+
+        assertEquals(1000, tile.length);
+        assertEquals(1, tileServer.getRequestCount("/3/4/2"));
+        assertEquals(1, restarted.getDiskHits());
+        assertEquals(0, restarted.getMisses());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedTilesOverBudget() {
+        TileCache tileCache = newTileCache(1024 * 1024);
+        tileSize = 400 * 1024;
+
+        tileCache.getTile("osm/1/0/0");
+        tileCache.getTile("osm/1/1/0");
+        // makes 1/1/0 the least recently used
+        tileCache.getTile("osm/1/0/0");
+        tileCache.getTile("osm/1/0/1");
+
+        assertEquals(1, tileCache.getEvictions());
+        assertFalse(Files.exists(directory.resolve("osm/1/1/0")));
+        assertTrue(Files.exists(directory.resolve("osm/1/0/0")));
+        assertTrue(Files.exists(directory.resolve("osm/1/0/1")));
+    }
+
+    @Test
+    void restartKeepsRecencyOfMemoryHits() throws IOException {
+        TileCache tileCache = newTileCache(DISK_BUDGET_BYTES);
+        tileCache.getTile("osm/1/0/0");
+        tileCache.getTile("osm/1/1/0");
+        Files.setLastModifiedTime(directory.resolve("osm/1/0/0"), FileTime.fromMillis(0));
+        Files.setLastModifiedTime(directory.resolve("osm/1/1/0"), FileTime.fromMillis(1000));
+        // served from memory
+        tileCache.getTile("osm/1/0/0");
+
+        TileCache restarted = newTileCache(1500);
+        restarted.indexDisk();
+
+        assertTrue(Files.exists(directory.resolve("osm/1/0/0")));
+        assertFalse(Files.exists(directory.resolve("osm/1/1/0")));
+    }
+
+    @Test
+    void upstreamErrorIsNotCached() {
+        TileCache tileCache = newTileCache(DISK_BUDGET_BYTES);
+        tileServer.setStatus(503);
+
+        assertNull(tileCache.getTile("osm/3/4/2"));
+        assertFalse(Files.exists(directory.resolve("osm/3/4/2")));
+
+        tileServer.setStatus(200);
+        assertNotNull(tileCache.getTile("osm/3/4/2"));
+        assertEquals(2, tileServer.getRequestCount("/3/4/2"));
+    }
+
+    @Test
+    void concurrentMissesShareOneFetch() throws Exception {
+        TileCache tileCache = newTileCache(DISK_BUDGET_BYTES);
+        tileServer.setDelayMillis(300);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> tiles = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tiles.add(executor.submit(() -> tileCache.getTile("osm/3/4/2")));
+            }
+            for (Future<byte[]> tile : tiles) {
+                assertEquals(1000, tile.get(5, TimeUnit.SECONDS).length);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, tileServer.getRequestCount("/3/4/2"));
+        assertEquals(7, tileCache.getCoalesced() + tileCache.getMemoryHits());
+    }
+
+    @Test
+    void servesTilesOverHttp() throws Exception {
+        TileCache tileCache = newTileCache(DISK_BUDGET_BYTES);
+        String baseUrl = tileCache.start();
+        try {
+            HttpClient httpClient = HttpClient.newHttpClient();
+            HttpResponse<byte[]> tile = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/osm/3/4/2")).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            HttpResponse<byte[]> unknownLayer = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/foo/3/4/2")).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+
+            assertEquals(200, tile.statusCode());
+            assertEquals(1000, tile.body().length);
+            assertEquals(404, unknownLayer.statusCode());
+        } finally {
+            tileCache.stop();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2021.
+ *
+ * This file is part of JFX World Clock.
+ *
+ *     JFX World Clock is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 2 of the License, or
+ *     (at your option) any later version.
+ *
+ *     JFX World Clock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with JFX World Clock.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.carlfx.worldclock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the {@link WeatherService} against a local stub weather server.
+ */
+class WeatherServiceTest {
+    private static final String REPORT = """
+            {"weather":[{"icon":"04n","description":"broken clouds"}],"main":{"temp":21.4}}""";
+
+    @TempDir
+    Path directory;
+
+    private StubHttpServer weatherServer;
+    // stands in for the application's first frame gating the first refreshes
+    private final CompletableFuture<Void> firstFrame = new CompletableFuture<>();
+    private WeatherCache weatherCache;
+    private WeatherService weatherService;
+
+    @BeforeEach
+    void startWeatherServer() throws IOException {
+        weatherServer = new StubHttpServer(4,
+                status -> (status == 200 ? REPORT : "{\"cod\":500}").getBytes(StandardCharsets.UTF_8));
+        String weatherUrl = weatherServer.getBaseUrl() + "/weather?lat=%s&lon=%s&appid=%s";
+        weatherCache = new WeatherCache(directory.resolve("weather.json"), Duration.ofMinutes(10));
+        weatherService = new WeatherService(weatherUrl, "test-appid", weatherCache, firstFrame::thenRun);
+    }
+
+    @AfterEach
+    void stopWeatherServer() {
+        weatherServer.close();
+    }
+
+    private static Location location(String city, double lat, double lon) {
+        Location location = new Location("Europe/London", city, "GB");
+        location.setLatLong(new double[] {lat, lon});
+        return location;
+    }
+
+    @Test
+    void subscribersOfOneCellShareOneRequest() throws InterruptedException {
+        weatherServer.setDelayMillis(300);
+        int subscriberCount = 5;
+        for (int i = 0; i < subscriberCount; i++) {
+            Location location = location("London" + i, 51.5074 + i * 0.0005, -0.1278);
+            assertEquals(WeatherCache.cellOf(location(null, 51.5074, -0.1278)), WeatherCache.cellOf(location));
+            weatherService.subscribe(location, weatherReport -> {});
+        }
+        // subscribers without a cached report are refreshed once the first frame was shown
+        firstFrame.complete(null);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((weatherService.getRequestCount() == 0
+                || weatherService.getCoalescedCount() + weatherService.getCacheHitCount() < subscriberCount - 1)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, weatherServer.getRequestCount());
+        assertEquals(1, weatherService.getRequestCount());
+        assertEquals(subscriberCount - 1, weatherService.getCoalescedCount() + weatherService.getCacheHitCount());
+    }
+
+    @Test
+    void concurrentRequestsOfOneCellAreCoalesced() throws Exception {
+        weatherServer.setDelayMillis(300);
+        var london = weatherService.request(location("London", 51.5074, -0.1278));
+        var westminster = weatherService.request(location("Westminster", 51.5076, -0.1279));
+
+        assertSame(london, westminster);
+        assertEquals(21.4, london.get(5, TimeUnit.SECONDS).temperature(), 0.001);
+        assertEquals(1, weatherServer.getRequestCount());
+        assertEquals(1, weatherService.getCoalescedCount());
+    }
+
+    @Test
+    void requestsReuseTheSharedHttpClient() throws Exception {
+        weatherService.request(location("London", 51.5074, -0.1278)).get(5, TimeUnit.SECONDS);
+        weatherService.request(location("Paris", 48.8566, 2.3522)).get(5, TimeUnit.SECONDS);
+        weatherService.request(location("Madrid", 40.4168, -3.7038)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, weatherServer.getRequestCount());
+        // one client keeps its connection alive for the following requests
+        assertEquals(1, weatherServer.getClientPorts().stream().distinct().count());
+    }
+
+    @Test
+    void errorResponseIsDeliveredWithoutCaching() throws Exception {
+        Location london = location("London", 51.5074, -0.1278);
+        weatherServer.setStatus(500);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> weatherService.request(london).get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof IOException, error.toString());
+        assertNull(weatherCache.get(WeatherCache.cellOf(london)));
+        assertEquals(1, weatherService.getFailureCount());
+
+        weatherServer.setStatus(200);
+        WeatherReport weatherReport = weatherService.request(london).get(5, TimeUnit.SECONDS);
+        assertEquals("broken clouds", weatherReport.description());
+        assertNotNull(weatherCache.get(WeatherCache.cellOf(london)));
+        assertEquals(2, weatherServer.getRequestCount());
+    }
+}